@@ -17,23 +17,80 @@
 package io.github.legion2.tosca_amqp_service_adapter;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+
+import org.slf4j.Logger;
 
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
-import com.rabbitmq.client.DeliverCallback;
 
 import io.github.amyassist.amy.core.di.annotation.Context;
 import io.github.amyassist.amy.core.di.annotation.PostConstruct;
 import io.github.amyassist.amy.core.di.annotation.PreDestroy;
+import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.annotation.Service;
+import io.github.legion2.messaging_adapter.ConnectionRegistry;
+import io.github.legion2.messaging_adapter.DeliveryStage;
+import io.github.legion2.messaging_adapter.Message;
 import io.github.legion2.messaging_adapter.MessageConsumer;
 import io.github.legion2.messaging_adapter.MessagingAdapter;
+import io.github.legion2.messaging_adapter.OverflowPolicy;
+import io.github.legion2.messaging_adapter.Payloads;
+import io.github.legion2.tosca_amqp_service_adapter.AMQPPublisher.Publication;
 
+/**
+ * Implementation of the MessagingAdapter using RabbitMQ. All adapter instances of the same broker share one
+ * connection, each adapter uses its own channels.
+ * 
+ * @author Leon Kiefer
+ */
 @Service
 public class AMQPMessagingAdapterImpl implements MessagingAdapter {
+	private static final ConnectionRegistry<CompletableFuture<Connection>> CONNECTIONS = new ConnectionRegistry<>(
+			AMQPMessagingAdapterImpl::closeConnection);
+
+	private static final int DEFAULT_PUBLISHER_QUEUE_SIZE = 100000;
+	private static final int DEFAULT_PUBLISHER_CHANNELS = 4;
+	private static final int DEFAULT_PUBLISHER_BATCH_SIZE = 500;
+	private static final int DEFAULT_PUBLISHER_FLUSH_INTERVAL = 10;
+	private static final long CONFIRM_TIMEOUT = 10000;
+	private static final int DEFAULT_SUBSCRIBER_PREFETCH = 100;
+	private static final int DEFAULT_SUBSCRIBER_ACK_BATCH_SIZE = 50;
+	private static final int DEFAULT_SUBSCRIBER_ACK_INTERVAL = 100;
+
+	private static final int DEFAULT_DELIVERY_THREADS = 4;
+
+	// the delays of the connect retries are given in milliseconds
+	private static final long INITIAL_RETRY_DELAY = 1000;
+	private static final long MAX_RETRY_DELAY = 60000;
+	private static final int CONNECT_THREADS = 2;
+
+	/**
+	 * establishes the shared connections and retries failed connects, so the blocking connects don't run on the
+	 * common pool
+	 */
+	private static final ScheduledExecutorService CONNECTOR = Executors.newScheduledThreadPool(CONNECT_THREADS,
+			runnable -> {
+				Thread thread = new Thread(runnable, "amqp-connect");
+				thread.setDaemon(true);
+				return thread;
+			});
 
 	@Context("host")
 	private String host;
@@ -44,49 +101,246 @@ public class AMQPMessagingAdapterImpl implements MessagingAdapter {
 	@Context("exchangeName")
 	private String exchangeName;
 
-	private Channel channel;
+	@Context(value = "publisher.queueSize", optional = true)
+	private String publisherQueueSize;
+
+	@Context(value = "publisher.channels", optional = true)
+	private String publisherChannels;
+
+	@Context(value = "publisher.batchSize", optional = true)
+	private String publisherBatchSize;
+
+	@Context(value = "publisher.flushInterval", optional = true)
+	private String publisherFlushInterval;
+
+	@Context(value = "subscriber.prefetch", optional = true)
+	private String subscriberPrefetch;
+
+	@Context(value = "subscriber.ackBatchSize", optional = true)
+	private String subscriberAckBatchSize;
+
+	@Context(value = "subscriber.ackInterval", optional = true)
+	private String subscriberAckInterval;
+
+	@Context(value = "delivery.queueSize", optional = true)
+	private String deliveryQueueSize;
+
+	@Context(value = "delivery.overflow", optional = true)
+	private String deliveryOverflow;
+
+	@Context(value = "delivery.threads", optional = true)
+	private String deliveryThreads;
+
+	@Context(value = "delivery.executor", optional = true)
+	private Executor deliveryExecutor;
+
+	@Reference
+	private Logger logger;
+
+	private CompletableFuture<Connection> connection;
+
+	/**
+	 * the connection after the exchange is declared
+	 */
+	private CompletableFuture<Connection> ready;
 
-	private String consumerTag;
+	private volatile Channel channel;
 
-	private String queue;
+	private AMQPPublisher publisher;
 
+	private final Map<Subscription, CompletableFuture<AMQPSubscription>> subscriptions = new ConcurrentHashMap<>();
+
+	private ScheduledExecutorService ackScheduler;
+
+	private DeliveryStage deliveryStage;
+
+	/**
+	 * Acquire the shared connection of the broker, which is established asynchronously. A failed connect is retried
+	 * with an exponential backoff until the connection is established or released. Until the exchange is declared,
+	 * published messages are queued in the publisher pipeline and subscriptions are created afterwards.
+	 * 
+	 * @return the readiness of the adapter
+	 */
 	@PostConstruct
-	private void setup() {
-		ConnectionFactory factory = new ConnectionFactory();
-		factory.setHost(host);
-		factory.setPort(Integer.parseInt(portNumber));
+	private CompletionStage<Void> setup() {
+		this.connection = CONNECTIONS.acquire(this.host + ":" + this.portNumber, this::connect);
+		this.ready = this.connection.thenApply(this::declareExchange);
+		this.ready.whenComplete((connection, e) -> {
+			// the connection is cancelled if it is released before it was established
+			if (e != null && !this.connection.isCancelled()) {
+				this.logger.error("Could not connect to the broker", e);
+			}
+		});
+
+		this.publisher = new AMQPPublisher(this.logger, this.ready, this.exchangeName,
+				intOrDefault(this.publisherQueueSize, DEFAULT_PUBLISHER_QUEUE_SIZE),
+				intOrDefault(this.publisherChannels, DEFAULT_PUBLISHER_CHANNELS),
+				intOrDefault(this.publisherBatchSize, DEFAULT_PUBLISHER_BATCH_SIZE),
+				intOrDefault(this.publisherFlushInterval, DEFAULT_PUBLISHER_FLUSH_INTERVAL), CONFIRM_TIMEOUT);
+
+		int ackInterval = intOrDefault(this.subscriberAckInterval, DEFAULT_SUBSCRIBER_ACK_INTERVAL);
+		this.ackScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "amqp-ack-flush");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.ackScheduler.scheduleWithFixedDelay(
+				() -> this.subscriptions.values().forEach(subscription -> ifCreated(subscription, AMQPSubscription::flush)),
+				ackInterval, ackInterval, TimeUnit.MILLISECONDS);
+
+		if (this.deliveryQueueSize != null) {
+			this.deliveryStage = new DeliveryStage("amqp", this.deliveryExecutor,
+					intOrDefault(this.deliveryThreads, DEFAULT_DELIVERY_THREADS), Integer.parseInt(this.deliveryQueueSize),
+					this.deliveryOverflow == null ? OverflowPolicy.BLOCK : OverflowPolicy.valueOf(this.deliveryOverflow),
+					(topic, e) -> this.logger.error("Consumer failed to consume message of topic " + topic, e));
+		}
+		return this.ready.thenAccept(connection -> {
+		});
+	}
+
+	private CompletableFuture<Connection> connect() {
+		CompletableFuture<Connection> connection = new CompletableFuture<>();
+		CONNECTOR.execute(() -> this.connect(connection, INITIAL_RETRY_DELAY));
+		return connection;
+	}
+
+	/**
+	 * Try to connect and schedule a retry with the doubled delay if the connect failed.
+	 * 
+	 * @param connection
+	 *            the future of the connection, which is cancelled when it is released before it was established
+	 * @param retryDelay
+	 *            the delay in milliseconds before the next retry
+	 */
+	private void connect(CompletableFuture<Connection> connection, long retryDelay) {
+		if (connection.isDone()) {
+			return;
+		}
+		Connection establishedConnection;
+		try {
+			establishedConnection = this.newConnection();
+		} catch (IllegalStateException e) {
+			this.logger.warn("Could not connect to the broker, retrying in " + retryDelay + " ms", e);
+			CONNECTOR.schedule(() -> this.connect(connection, Math.min(retryDelay * 2, MAX_RETRY_DELAY)), retryDelay,
+					TimeUnit.MILLISECONDS);
+			return;
+		}
+		if (!connection.complete(establishedConnection)) {
+			closeConnection(CompletableFuture.completedFuture(establishedConnection));
+		}
+	}
 
+	private Connection newConnection() {
+		ConnectionFactory factory = new ConnectionFactory();
+		factory.setHost(this.host);
+		factory.setPort(Integer.parseInt(this.portNumber));
 		try {
-			Connection conn = factory.newConnection();
-			this.channel = conn.createChannel();
-			this.channel.exchangeDeclare(exchangeName, "topic");
-			queue = channel.queueDeclare().getQueue();
+			return factory.newConnection();
 		} catch (IOException | TimeoutException e) {
-			e.printStackTrace();
+			throw new IllegalStateException("Could not connect to the broker", e);
 		}
 	}
 
-	@Override
-	public void publish(String topic, String payload, int qualityOfService, boolean retain) {
+	private Connection declareExchange(Connection connection) {
 		try {
-			topic = topic.replace('/', '.');
-			channel.basicPublish(exchangeName, topic, null, payload.getBytes(StandardCharsets.UTF_8));
+			this.channel = connection.createChannel();
+			this.channel.exchangeDeclare(this.exchangeName, "topic");
 		} catch (IOException e) {
-			throw new IllegalStateException(e);
+			throw new IllegalStateException("Could not declare the exchange", e);
 		}
+		return connection;
 	}
 
+	private static void closeConnection(CompletableFuture<Connection> connection) {
+		// stops the retries if the connection is not established yet
+		connection.cancel(false);
+		connection.thenAccept(establishedConnection -> {
+			try {
+				establishedConnection.close();
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not close the connection", e);
+			}
+		});
+	}
+
+	private static void ifCreated(CompletableFuture<AMQPSubscription> subscription, Consumer<AMQPSubscription> action) {
+		if (subscription.isDone() && !subscription.isCompletedExceptionally()) {
+			action.accept(subscription.join());
+		}
+	}
+
+	private static int intOrDefault(String value, int defaultValue) {
+		return value == null ? defaultValue : Integer.parseInt(value);
+	}
+
+	/**
+	 * Adds the message to the publisher pipeline, it is published asynchronously.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the queue of the pipeline is full
+	 * @see AMQPPublisher
+	 */
+	@Override
+	public void publish(String topic, ByteBuffer payload, int qualityOfService, boolean retain) {
+		this.publisher.publish(topic.replace('/', '.'), Payloads.toArray(payload));
+	}
+
+	/**
+	 * Adds all messages to the publisher pipeline at once, where they are published in batches with publisher
+	 * confirms.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the queue of the pipeline has not enough capacity for all messages
+	 * @see AMQPPublisher
+	 */
+	@Override
+	public void publishAll(Collection<Message> messages) {
+		List<Publication> publications = new ArrayList<>(messages.size());
+		for (Message message : messages) {
+			publications.add(
+					new Publication(message.getTopic().replace('/', '.'), Payloads.toArray(message.getPayload())));
+		}
+		this.publisher.publishAll(publications);
+	}
+
+	/**
+	 * Each subscription gets its own channel and queue, the MQTT wildcards of the topic are translated to AMQP. If the
+	 * delivery stage is configured, the consumer is called asynchronously by the stage. Before the adapter is ready,
+	 * the subscription is created when the connection is established.
+	 * 
+	 * @see AMQPSubscription
+	 * @see DeliveryStage
+	 */
 	@Override
 	public void subscribe(String topic, MessageConsumer consumer) {
-		try {
-			channel.queueBind(queue, this.exchangeName, topic.replace('/', '.'));
-			DeliverCallback deliverCallback = (c, delivery) -> {
-				String message = new String(delivery.getBody(), StandardCharsets.UTF_8);
-				String routingKey = delivery.getEnvelope().getRoutingKey();
-				consumer.consumer(message, routingKey.replace('.', '/'));
-			};
-			consumerTag = channel.basicConsume(queue, true, deliverCallback, c -> {
+		Subscription key = new Subscription(topic, consumer);
+		CompletableFuture<AMQPSubscription> subscription = this.subscriptions.computeIfAbsent(key,
+				k -> this.ready.thenApply(connection -> this.createSubscription(connection, topic, consumer)));
+		if (subscription.isDone()) {
+			try {
+				subscription.join();
+			} catch (CompletionException e) {
+				this.subscriptions.remove(key, subscription);
+				throw new IllegalStateException("Error while subscribing", e.getCause());
+			}
+		} else {
+			subscription.whenComplete((s, e) -> {
+				if (e != null) {
+					this.subscriptions.remove(key, subscription);
+					this.logger.error("Error while subscribing to " + topic, e);
+				}
 			});
+		}
+	}
+
+	private AMQPSubscription createSubscription(Connection connection, String topic, MessageConsumer consumer) {
+		String routingKey = topic.replace('/', '.').replace('+', '*');
+		MessageConsumer deliveryConsumer = this.deliveryStage == null ? consumer
+				: this.deliveryStage.subscription(consumer);
+		try {
+			return new AMQPSubscription(this.logger, connection, this.exchangeName, routingKey, deliveryConsumer,
+					intOrDefault(this.subscriberPrefetch, DEFAULT_SUBSCRIBER_PREFETCH),
+					intOrDefault(this.subscriberAckBatchSize, DEFAULT_SUBSCRIBER_ACK_BATCH_SIZE));
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
@@ -94,20 +348,73 @@ public class AMQPMessagingAdapterImpl implements MessagingAdapter {
 
 	@Override
 	public void unsubscribe(String topic, MessageConsumer consumer) {
+		CompletableFuture<AMQPSubscription> subscription = this.subscriptions.remove(new Subscription(topic, consumer));
+		if (subscription == null) {
+			throw new IllegalArgumentException("The consumer is not subscribed to " + topic);
+		}
+		if (subscription.isDone()) {
+			ifCreated(subscription, this::cancel);
+		} else {
+			subscription.thenAccept(this::cancelQuietly);
+		}
+	}
+
+	private void cancel(AMQPSubscription subscription) {
 		try {
-			channel.basicCancel(consumerTag);
+			subscription.cancel();
 		} catch (IOException e) {
 			throw new IllegalStateException(e);
 		}
 	}
-	
+
+	private void cancelQuietly(AMQPSubscription subscription) {
+		try {
+			subscription.cancel();
+		} catch (IOException e) {
+			this.logger.warn("Could not cancel subscription", e);
+		}
+	}
+
 	@PreDestroy
 	private void end() {
-		try {
-			this.channel.close();
-		} catch (IOException | TimeoutException e) {
-			e.printStackTrace();
+		this.publisher.close();
+		this.ackScheduler.shutdownNow();
+		for (CompletableFuture<AMQPSubscription> subscription : this.subscriptions.values()) {
+			subscription.thenAccept(this::cancelQuietly);
+		}
+		if (this.deliveryStage != null) {
+			this.deliveryStage.close();
+		}
+		if (this.channel != null) {
+			try {
+				this.channel.close();
+			} catch (IOException | TimeoutException e) {
+				this.logger.warn("Could not close the channel of the exchange", e);
+			}
 		}
+		CONNECTIONS.release(this.connection);
 	}
 
+	private static class Subscription {
+		private final String topic;
+		private final MessageConsumer consumer;
+
+		Subscription(String topic, MessageConsumer consumer) {
+			this.topic = topic;
+			this.consumer = consumer;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(this.topic, this.consumer);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Subscription))
+				return false;
+			Subscription other = (Subscription) obj;
+			return this.topic.equals(other.topic) && this.consumer.equals(other.consumer);
+		}
+	}
 }
@@ -0,0 +1,456 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_amqp_service_adapter;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+
+/**
+ * Publisher pipeline of the AMQP adapter. Messages are added to a bounded lock-free queue and drained by a dispatcher
+ * thread in batches, which are sent when they are full or when the flush interval elapsed. The batches are published
+ * by one thread per channel, each channel in confirm mode, because channels must not be shared between threads. The
+ * messages are assigned to a channel by their routing key and the batches of a channel are published one after
+ * another, so messages with the same routing key are published in order. Each batch waits for the confirms of the
+ * broker once. If a batch fails or is nacked, the channel is closed and
+ * the whole batch is published again on a new channel, so messages may be delivered twice. A batch which still fails
+ * after {@value #MAX_ATTEMPTS} attempts is counted as failed. The metrics are registered as
+ * {@link AMQPPublisherMXBean}. The dispatcher is started when the connection is established, until then the messages
+ * are only queued. If the connection fails or the publisher is closed before the dispatcher was started, the queued
+ * messages are counted as failed and no more messages are accepted.
+ * 
+ * @author Leon Kiefer
+ */
+class AMQPPublisher implements AMQPPublisherMXBean {
+	private static final AtomicInteger INSTANCES = new AtomicInteger();
+	private static final int MAX_ATTEMPTS = 3;
+	private static final long RETRY_DELAY = 100;
+
+	private final Logger logger;
+	private volatile Connection connection;
+	private final String exchangeName;
+	private final int queueCapacity;
+	private final int batchSize;
+	private final long flushInterval;
+	private final long confirmTimeout;
+
+	private final Queue<Publication> queue = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger queueSize = new AtomicInteger();
+	private final Semaphore inFlightBatches;
+	/**
+	 * one single threaded executor per channel
+	 */
+	private final List<ExecutorService> publishers = new ArrayList<>();
+	private final ThreadLocal<Channel> channels = new ThreadLocal<>();
+	private final List<Channel> openChannels = new ArrayList<>();
+	private final Thread dispatcher;
+	private volatile boolean running = true;
+
+	private final AtomicLong confirmed = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong retried = new AtomicLong();
+	private final AtomicLong confirmedBatches = new AtomicLong();
+	private final AtomicLong confirmLatency = new AtomicLong();
+	private final AtomicLong maxConfirmLatency = new AtomicLong();
+	private final long started = System.nanoTime();
+	private ObjectName objectName;
+
+	/**
+	 * @param logger
+	 *            the logger for failed batches
+	 * @param connection
+	 *            the stage of the connection used to create the channels
+	 * @param exchangeName
+	 *            the exchange to publish to
+	 * @param queueCapacity
+	 *            the maximum number of queued messages
+	 * @param channels
+	 *            the number of channels used to publish batches in parallel
+	 * @param batchSize
+	 *            the maximum number of messages in a batch
+	 * @param flushInterval
+	 *            the time in milliseconds after which a batch is sent even if it is not full
+	 * @param confirmTimeout
+	 *            the time in milliseconds to wait for the confirms of a batch
+	 */
+	AMQPPublisher(Logger logger, CompletionStage<Connection> connection, String exchangeName, int queueCapacity,
+			int channels, int batchSize, long flushInterval, long confirmTimeout) {
+		this.logger = logger;
+		this.exchangeName = exchangeName;
+		this.queueCapacity = queueCapacity;
+		this.batchSize = batchSize;
+		this.flushInterval = flushInterval;
+		this.confirmTimeout = confirmTimeout;
+		this.inFlightBatches = new Semaphore(channels);
+		for (int i = 0; i < channels; i++) {
+			this.publishers.add(Executors.newSingleThreadExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "amqp-publisher");
+				thread.setDaemon(true);
+				return thread;
+			}));
+		}
+		this.dispatcher = new Thread(this::dispatch, "amqp-publisher-dispatcher");
+		this.dispatcher.setDaemon(true);
+		connection.whenComplete((establishedConnection, e) -> {
+			synchronized (this.dispatcher) {
+				if (!this.running) {
+					// the queue was discarded when the publisher was closed
+					return;
+				}
+				if (e == null) {
+					this.connection = establishedConnection;
+					this.dispatcher.start();
+					return;
+				}
+				this.running = false;
+			}
+			this.discardQueue(e);
+		});
+
+		try {
+			this.objectName = new ObjectName(
+					"io.github.legion2.tosca_amqp_service_adapter:type=AMQPPublisher,exchange="
+							+ ObjectName.quote(exchangeName) + ",instance=" + INSTANCES.incrementAndGet());
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+		} catch (JMException e) {
+			this.logger.warn("Could not register the publisher metrics", e);
+			this.objectName = null;
+		}
+	}
+
+	/**
+	 * Add a message to the queue of the pipeline.
+	 * 
+	 * @param routingKey
+	 *            the routing key of the message
+	 * @param body
+	 *            the body of the message
+	 * @throws IllegalStateException
+	 *             if the queue is full, the publisher is closed or could not connect
+	 */
+	void publish(String routingKey, byte[] body) {
+		if (!this.running) {
+			throw new IllegalStateException("The publisher is closed or could not connect");
+		}
+		if (this.queueSize.incrementAndGet() > this.queueCapacity) {
+			this.queueSize.decrementAndGet();
+			this.rejected.incrementAndGet();
+			throw new IllegalStateException("The publish queue is full");
+		}
+		this.queue.add(new Publication(routingKey, body));
+		if (this.queueSize.get() >= this.batchSize) {
+			LockSupport.unpark(this.dispatcher);
+		}
+	}
+
+	/**
+	 * Add all messages to the queue of the pipeline at once. Either all or none of the messages are added.
+	 * 
+	 * @param publications
+	 *            the messages to publish
+	 * @throws IllegalStateException
+	 *             if the queue has not enough capacity left, the publisher is closed or could not connect
+	 */
+	void publishAll(Collection<Publication> publications) {
+		if (!this.running) {
+			throw new IllegalStateException("The publisher is closed or could not connect");
+		}
+		int count = publications.size();
+		if (this.queueSize.addAndGet(count) > this.queueCapacity) {
+			this.queueSize.addAndGet(-count);
+			this.rejected.addAndGet(count);
+			throw new IllegalStateException("The publish queue is full");
+		}
+		this.queue.addAll(publications);
+		if (this.queueSize.get() >= this.batchSize) {
+			LockSupport.unpark(this.dispatcher);
+		}
+	}
+
+	/**
+	 * Count the queued messages as failed, because the dispatcher was not started.
+	 * 
+	 * @param cause
+	 *            the cause of the failed connection or null if the publisher was closed
+	 */
+	private void discardQueue(Throwable cause) {
+		int discarded = 0;
+		while (this.queue.poll() != null) {
+			this.queueSize.decrementAndGet();
+			discarded++;
+		}
+		this.failed.addAndGet(discarded);
+		if (discarded > 0 || cause != null) {
+			this.logger.error("Could not publish " + discarded + " messages, because the publisher is not connected",
+					cause);
+		}
+	}
+
+	private void dispatch() {
+		int channels = this.publishers.size();
+		List<List<Publication>> batches = new ArrayList<>(channels);
+		long[] deadlines = new long[channels];
+		for (int i = 0; i < channels; i++) {
+			batches.add(new ArrayList<>(this.batchSize));
+		}
+		long flushInterval = TimeUnit.MILLISECONDS.toNanos(this.flushInterval);
+		while (this.running || !this.queue.isEmpty()) {
+			Publication message = this.queue.poll();
+			long now = System.nanoTime();
+			if (message != null) {
+				this.queueSize.decrementAndGet();
+				int channel = Math.floorMod(message.routingKey.hashCode(), channels);
+				if (batches.get(channel).isEmpty()) {
+					deadlines[channel] = now + flushInterval;
+				}
+				batches.get(channel).add(message);
+			}
+			long timeout = flushInterval;
+			for (int i = 0; i < channels; i++) {
+				List<Publication> batch = batches.get(i);
+				if (batch.size() >= this.batchSize || !batch.isEmpty() && now - deadlines[i] >= 0) {
+					batches.set(i, this.send(i, batch));
+				} else if (!batch.isEmpty()) {
+					timeout = Math.min(timeout, deadlines[i] - now);
+				}
+			}
+			if (message == null && this.running) {
+				LockSupport.parkNanos(this, Math.max(timeout, 0));
+			}
+		}
+		for (int i = 0; i < channels; i++) {
+			if (!batches.get(i).isEmpty()) {
+				this.send(i, batches.get(i));
+			}
+		}
+	}
+
+	private List<Publication> send(int channel, List<Publication> batch) {
+		this.inFlightBatches.acquireUninterruptibly();
+		this.publishers.get(channel).execute(() -> {
+			try {
+				this.publishBatch(batch);
+			} finally {
+				this.inFlightBatches.release();
+			}
+		});
+		return new ArrayList<>(this.batchSize);
+	}
+
+	private void publishBatch(List<Publication> batch) {
+		long start = System.nanoTime();
+		for (int attempt = 1;; attempt++) {
+			try {
+				Channel channel = this.channel();
+				for (Publication message : batch) {
+					channel.basicPublish(this.exchangeName, message.routingKey, null, message.body);
+				}
+				channel.waitForConfirmsOrDie(this.confirmTimeout);
+				break;
+			} catch (IOException | InterruptedException | TimeoutException | RuntimeException e) {
+				// the channel is closed by waitForConfirmsOrDie if a message was nacked
+				this.closeChannel();
+				if (e instanceof InterruptedException) {
+					Thread.currentThread().interrupt();
+				} else if (attempt < MAX_ATTEMPTS && this.awaitRetry(attempt)) {
+					this.retried.addAndGet(batch.size());
+					this.logger.warn("Could not publish " + batch.size() + " messages, retrying on a new channel", e);
+					continue;
+				}
+				this.failed.addAndGet(batch.size());
+				this.logger.error("Could not publish " + batch.size() + " messages", e);
+				return;
+			}
+		}
+		long latency = System.nanoTime() - start;
+		this.confirmed.addAndGet(batch.size());
+		this.confirmedBatches.incrementAndGet();
+		this.confirmLatency.addAndGet(latency);
+		this.maxConfirmLatency.accumulateAndGet(latency, Math::max);
+	}
+
+	/**
+	 * Wait before the next attempt, the delay grows with the number of attempts.
+	 * 
+	 * @return false if the thread was interrupted
+	 */
+	private boolean awaitRetry(int attempt) {
+		try {
+			Thread.sleep(RETRY_DELAY * attempt);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void closeChannel() {
+		Channel channel = this.channels.get();
+		this.channels.remove();
+		if (channel == null) {
+			return;
+		}
+		synchronized (this.openChannels) {
+			this.openChannels.remove(channel);
+		}
+		if (channel.isOpen()) {
+			try {
+				channel.close();
+			} catch (IOException | TimeoutException | RuntimeException e) {
+				this.logger.debug("Could not close the failed channel", e);
+			}
+		}
+	}
+
+	private Channel channel() throws IOException {
+		Channel channel = this.channels.get();
+		if (channel == null || !channel.isOpen()) {
+			channel = this.connection.createChannel();
+			channel.confirmSelect();
+			this.channels.set(channel);
+			synchronized (this.openChannels) {
+				this.openChannels.add(channel);
+			}
+		}
+		return channel;
+	}
+
+	/**
+	 * Publish the queued messages, wait for their confirms and close the channels.
+	 */
+	void close() {
+		boolean started;
+		synchronized (this.dispatcher) {
+			this.running = false;
+			started = this.dispatcher.getState() != Thread.State.NEW;
+		}
+		if (!started) {
+			this.discardQueue(null);
+		}
+		LockSupport.unpark(this.dispatcher);
+		try {
+			this.dispatcher.join();
+			this.publishers.forEach(ExecutorService::shutdown);
+			long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.confirmTimeout);
+			for (ExecutorService publisher : this.publishers) {
+				if (!publisher.awaitTermination(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+					this.logger.warn("Timeout while waiting for the confirms of the last messages");
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		synchronized (this.openChannels) {
+			for (Channel channel : this.openChannels) {
+				try {
+					if (channel.isOpen()) {
+						channel.close();
+					}
+				} catch (IOException | TimeoutException e) {
+					this.logger.warn("Could not close channel", e);
+				}
+			}
+		}
+		if (this.objectName != null) {
+			MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+			try {
+				mBeanServer.unregisterMBean(this.objectName);
+			} catch (JMException e) {
+				this.logger.warn("Could not unregister the publisher metrics", e);
+			}
+		}
+	}
+
+	@Override
+	public int getQueueSize() {
+		return this.queueSize.get();
+	}
+
+	@Override
+	public long getConfirmed() {
+		return this.confirmed.get();
+	}
+
+	@Override
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	@Override
+	public long getFailed() {
+		return this.failed.get();
+	}
+
+	@Override
+	public long getRetried() {
+		return this.retried.get();
+	}
+
+	@Override
+	public double getThroughput() {
+		double seconds = (System.nanoTime() - this.started) / 1e9;
+		return seconds > 0 ? this.confirmed.get() / seconds : 0;
+	}
+
+	@Override
+	public double getAverageConfirmLatency() {
+		long batches = this.confirmedBatches.get();
+		return batches > 0 ? this.confirmLatency.get() / 1e6 / batches : 0;
+	}
+
+	@Override
+	public double getMaxConfirmLatency() {
+		return this.maxConfirmLatency.get() / 1e6;
+	}
+
+	/**
+	 * A message which is published by the publisher.
+	 */
+	static class Publication {
+		private final String routingKey;
+		private final byte[] body;
+
+		Publication(String routingKey, byte[] body) {
+			this.routingKey = routingKey;
+			this.body = body;
+		}
+	}
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_amqp_service_adapter;
+
+/**
+ * Metrics of the publisher pipeline of the AMQP adapter.
+ * 
+ * @author Leon Kiefer
+ */
+public interface AMQPPublisherMXBean {
+	/**
+	 * @return the number of messages waiting in the queue of the pipeline
+	 */
+	int getQueueSize();
+
+	/**
+	 * @return the number of messages confirmed by the broker
+	 */
+	long getConfirmed();
+
+	/**
+	 * @return the number of messages which were rejected because the queue was full
+	 */
+	long getRejected();
+
+	/**
+	 * @return the number of messages which were not confirmed by the broker after all attempts
+	 */
+	long getFailed();
+
+	/**
+	 * @return the number of messages which were published again on a new channel, because their batch failed
+	 */
+	long getRetried();
+
+	/**
+	 * @return the number of confirmed messages per second since the publisher was started
+	 */
+	double getThroughput();
+
+	/**
+	 * @return the average time in milliseconds from sending a batch until it is confirmed by the broker
+	 */
+	double getAverageConfirmLatency();
+
+	/**
+	 * @return the maximum time in milliseconds from sending a batch until it is confirmed by the broker
+	 */
+	double getMaxConfirmLatency();
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_amqp_service_adapter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.TreeSet;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.Delivery;
+
+import io.github.legion2.messaging_adapter.AcknowledgingConsumer;
+import io.github.legion2.messaging_adapter.MessageConsumer;
+
+/**
+ * A subscription of one consumer to one topic. Each subscription has its own channel and exclusive queue, so messages
+ * are delivered to all subscribed consumers and the consumers of different subscriptions run concurrently. The
+ * prefetch limits the unacknowledged messages of the subscription. Consumed messages are acknowledged in batches,
+ * either when the batch is full or when {@link #flush()} is called periodically. An {@link AcknowledgingConsumer}, like
+ * the subscription of a delivery stage, reports itself when a message is consumed. Because such messages may be
+ * consumed out of order, a batch only acknowledges the messages up to the oldest message which is not consumed yet.
+ * Messages rejected by the consumer with a {@link RejectedExecutionException} are requeued.
+ * 
+ * @author Leon Kiefer
+ */
+class AMQPSubscription {
+	private final Logger logger;
+	private final MessageConsumer consumer;
+	private final int ackBatchSize;
+	private final Channel channel;
+	private final String consumerTag;
+
+	/**
+	 * the delivery tags of the messages passed to the consumer which are not consumed yet
+	 */
+	private final TreeSet<Long> outstanding = new TreeSet<>();
+	/**
+	 * the delivery tags of the consumed messages which are not acknowledged yet
+	 */
+	private final TreeSet<Long> consumed = new TreeSet<>();
+
+	/**
+	 * Create the channel and the queue of the subscription and start consuming.
+	 * 
+	 * @param logger
+	 *            the logger for failed consumers
+	 * @param connection
+	 *            the connection used to create the channel
+	 * @param exchangeName
+	 *            the exchange to bind the queue to
+	 * @param routingKey
+	 *            the AMQP binding key of the subscription
+	 * @param consumer
+	 *            the consumer of the messages
+	 * @param prefetch
+	 *            the maximum number of unacknowledged messages
+	 * @param ackBatchSize
+	 *            the number of consumed messages which are acknowledged at once
+	 * @throws IOException
+	 *             if the subscription could not be created
+	 */
+	AMQPSubscription(Logger logger, Connection connection, String exchangeName, String routingKey,
+			MessageConsumer consumer, int prefetch, int ackBatchSize) throws IOException {
+		this.logger = logger;
+		this.consumer = consumer;
+		this.ackBatchSize = ackBatchSize;
+		this.channel = connection.createChannel();
+		this.channel.basicQos(prefetch);
+		String queue = this.channel.queueDeclare().getQueue();
+		this.channel.queueBind(queue, exchangeName, routingKey);
+		this.consumerTag = this.channel.basicConsume(queue, false, (tag, delivery) -> this.deliver(delivery), tag -> {
+		});
+	}
+
+	private void deliver(Delivery delivery) {
+		String topic = delivery.getEnvelope().getRoutingKey().replace('.', '/');
+		long deliveryTag = delivery.getEnvelope().getDeliveryTag();
+		synchronized (this) {
+			this.outstanding.add(deliveryTag);
+		}
+		try {
+			if (this.consumer instanceof AcknowledgingConsumer) {
+				((AcknowledgingConsumer) this.consumer).consume(ByteBuffer.wrap(delivery.getBody()), topic,
+						() -> this.consumed(deliveryTag));
+				return;
+			}
+			this.consumer.consume(ByteBuffer.wrap(delivery.getBody()), topic);
+		} catch (RejectedExecutionException e) {
+			this.rejected(deliveryTag);
+			return;
+		} catch (RuntimeException e) {
+			this.logger.error("Consumer failed to consume message of topic " + topic, e);
+		}
+		this.consumed(deliveryTag);
+	}
+
+	private synchronized void consumed(long deliveryTag) {
+		this.outstanding.remove(deliveryTag);
+		this.consumed.add(deliveryTag);
+		if (this.consumed.size() >= this.ackBatchSize) {
+			this.flush();
+		}
+	}
+
+	/**
+	 * The consumer has no capacity left, so the message is requeued by the broker.
+	 */
+	private synchronized void rejected(long deliveryTag) {
+		this.outstanding.remove(deliveryTag);
+		try {
+			this.channel.basicNack(deliveryTag, false, true);
+		} catch (IOException e) {
+			this.logger.warn("Could not reject message", e);
+		}
+	}
+
+	/**
+	 * Acknowledge the consumed messages up to the oldest message which is not consumed yet.
+	 */
+	synchronized void flush() {
+		if (this.consumed.isEmpty() || !this.channel.isOpen()) {
+			return;
+		}
+		Long deliveryTag = this.outstanding.isEmpty() ? this.consumed.last()
+				: this.consumed.lower(this.outstanding.first());
+		if (deliveryTag == null) {
+			return;
+		}
+		try {
+			this.channel.basicAck(deliveryTag, true);
+			this.consumed.headSet(deliveryTag, true).clear();
+		} catch (IOException e) {
+			this.logger.warn("Could not acknowledge messages", e);
+		}
+	}
+
+	/**
+	 * Stop consuming, acknowledge the consumed messages and close the channel, which deletes the queue.
+	 * 
+	 * @throws IOException
+	 *             if the subscription could not be canceled
+	 */
+	void cancel() throws IOException {
+		this.channel.basicCancel(this.consumerTag);
+		this.flush();
+		try {
+			this.channel.close();
+		} catch (TimeoutException e) {
+			throw new IOException(e);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_calculator_adapter;
+
+import java.util.concurrent.CompletableFuture;
+
+import io.github.amyassist.amy.core.di.annotation.Reference;
+import io.github.amyassist.amy.core.di.annotation.Service;
+import io.github.legion2.calculator.AsyncCalculator;
+
+/**
+ * 
+ * @author Leon Kiefer
+ */
+@Service
+public class AsyncCalculatorAdapterImpl implements AsyncCalculator {
+
+	@Reference
+	private CalculatorClient calculatorClient;
+
+	@Override
+	public CompletableFuture<Float> add(float a, float b) {
+		return this.calculatorClient.calculateAsync(a + "+" + b);
+	}
+
+	@Override
+	public CompletableFuture<Float> sub(float a, float b) {
+		return this.calculatorClient.calculateAsync(a + "-" + b);
+	}
+
+	@Override
+	public CompletableFuture<Float> mul(float a, float b) {
+		return this.calculatorClient.calculateAsync(a + "*" + b);
+	}
+
+	@Override
+	public CompletableFuture<Float> div(float a, float b) {
+		return this.calculatorClient.calculateAsync(a + "/" + b);
+	}
+
+}
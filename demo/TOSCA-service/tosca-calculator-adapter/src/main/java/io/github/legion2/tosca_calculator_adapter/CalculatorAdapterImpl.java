@@ -16,13 +16,7 @@
 
 package io.github.legion2.tosca_calculator_adapter;
 
-import javax.ws.rs.client.Client;
-import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.MediaType;
-
-import io.github.amyassist.amy.core.di.annotation.Context;
-import io.github.amyassist.amy.core.di.annotation.PostConstruct;
+import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.annotation.Service;
 import io.github.legion2.calculator.Calculator;
 
@@ -33,48 +27,27 @@ import io.github.legion2.calculator.Calculator;
 @Service
 public class CalculatorAdapterImpl implements Calculator {
 
-	private WebTarget calculatorTarget;
-
-	@Context("calculator.uri")
-	private String uri;
-
-	@PostConstruct
-	private void setup() {
-		Client client = ClientBuilder.newClient();
-		this.calculatorTarget = client.target(uri).path("api/calculate");
-	}
+	@Reference
+	private CalculatorClient calculatorClient;
 
 	@Override
 	public float add(float a, float b) {
-		ResponseModel response = calculatorTarget.queryParam("expression", a + "+" + b)
-				.request(MediaType.APPLICATION_JSON).get(ResponseModel.class);
-		return Float.parseFloat(response.result);
+		return this.calculatorClient.calculate(a + "+" + b);
 	}
 
 	@Override
 	public float sub(float a, float b) {
-		ResponseModel response = calculatorTarget.queryParam("expression", a + "-" + b)
-				.request(MediaType.APPLICATION_JSON).get(ResponseModel.class);
-		return Float.parseFloat(response.result);
+		return this.calculatorClient.calculate(a + "-" + b);
 	}
 
 	@Override
 	public float mul(float a, float b) {
-		ResponseModel response = calculatorTarget.queryParam("expression", a + "*" + b)
-				.request(MediaType.APPLICATION_JSON).get(ResponseModel.class);
-		return Float.parseFloat(response.result);
+		return this.calculatorClient.calculate(a + "*" + b);
 	}
 
 	@Override
 	public float div(float a, float b) {
-		ResponseModel response = calculatorTarget.queryParam("expression", a + "/" + b)
-				.request(MediaType.APPLICATION_JSON).get(ResponseModel.class);
-		return Float.parseFloat(response.result);
-	}
-
-	static class ResponseModel {
-		public String result;
-		public String instance;
+		return this.calculatorClient.calculate(a + "/" + b);
 	}
 
 }
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_calculator_adapter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import io.github.amyassist.amy.core.di.TaskScheduler;
+import io.github.legion2.tosca_calculator_adapter.CalculatorClient.ResultModel;
+
+/**
+ * Collects concurrent calculations and sends them as one batch. A batch is sent when it reaches the maximum size or
+ * when the time window after the first calculation of the batch elapsed. The results of the batch are completed in the
+ * futures of the individual calculations.
+ * 
+ * @author Leon Kiefer
+ */
+class CalculatorBatcher {
+	private final int maxSize;
+	private final long window;
+	private final Function<List<String>, CompletionStage<List<ResultModel>>> sender;
+	private final TaskScheduler taskScheduler;
+
+	private List<Calculation> pending = new ArrayList<>();
+	private ScheduledFuture<?> scheduledFlush;
+	private boolean closed;
+
+	/**
+	 * @param maxSize
+	 *            the maximum number of expressions in one batch
+	 * @param window
+	 *            the time window in milliseconds in which calculations are collected
+	 * @param sender
+	 *            sends the expressions of a batch and returns the results in the same order
+	 * @param taskScheduler
+	 *            the scheduler of the time windows
+	 */
+	CalculatorBatcher(int maxSize, long window, Function<List<String>, CompletionStage<List<ResultModel>>> sender,
+			TaskScheduler taskScheduler) {
+		this.maxSize = maxSize;
+		this.window = window;
+		this.sender = sender;
+		this.taskScheduler = taskScheduler;
+	}
+
+	/**
+	 * Add the expression to the current batch.
+	 * 
+	 * @param expression
+	 *            the expression to calculate
+	 * @return the future result of the expression, which fails if the batcher is closed
+	 */
+	CompletableFuture<Float> submit(String expression) {
+		Calculation calculation = new Calculation(expression);
+		List<Calculation> batch = null;
+		synchronized (this) {
+			if (this.closed) {
+				calculation.result.completeExceptionally(new IllegalStateException("The calculator batcher is closed"));
+				return calculation.result;
+			}
+			this.pending.add(calculation);
+			if (this.pending.size() >= this.maxSize) {
+				batch = this.drain();
+			} else if (this.pending.size() == 1) {
+				try {
+					this.scheduledFlush = this.taskScheduler.schedule(this::flush, this.window, TimeUnit.MILLISECONDS);
+				} catch (RejectedExecutionException e) {
+					// the dependency injection is shutting down, so do not wait for the window
+					batch = this.drain();
+				}
+			}
+		}
+		if (batch != null) {
+			this.send(batch);
+		}
+		return calculation.result;
+	}
+
+	/**
+	 * Send the current batch and cancel its scheduled flush. Calculations submitted after this fail.
+	 */
+	void close() {
+		synchronized (this) {
+			this.closed = true;
+		}
+		this.flush();
+	}
+
+	private void flush() {
+		List<Calculation> batch;
+		synchronized (this) {
+			batch = this.drain();
+		}
+		if (!batch.isEmpty()) {
+			this.send(batch);
+		}
+	}
+
+	private List<Calculation> drain() {
+		if (this.scheduledFlush != null) {
+			this.scheduledFlush.cancel(false);
+			this.scheduledFlush = null;
+		}
+		List<Calculation> batch = this.pending;
+		this.pending = new ArrayList<>();
+		return batch;
+	}
+
+	private void send(List<Calculation> batch) {
+		List<String> expressions = batch.stream().map(calculation -> calculation.expression)
+				.collect(Collectors.toList());
+		this.sender.apply(expressions).whenComplete((results, throwable) -> {
+			if (throwable == null && results.size() != batch.size()) {
+				throwable = new IllegalStateException(
+						"Expected " + batch.size() + " results but the calculator returned " + results.size());
+			}
+			for (int i = 0; i < batch.size(); i++) {
+				Calculation calculation = batch.get(i);
+				if (throwable != null) {
+					calculation.result.completeExceptionally(throwable);
+				} else if (results.get(i).error != null) {
+					calculation.result.completeExceptionally(new IllegalArgumentException(
+							"Could not calculate " + calculation.expression + ": " + results.get(i).error));
+				} else {
+					try {
+						calculation.result.complete(Float.parseFloat(results.get(i).result));
+					} catch (NumberFormatException e) {
+						calculation.result.completeExceptionally(e);
+					}
+				}
+			}
+		});
+	}
+
+	private static class Calculation {
+		private final String expression;
+		private final CompletableFuture<Float> result = new CompletableFuture<>();
+
+		Calculation(String expression) {
+			this.expression = expression;
+		}
+	}
+}
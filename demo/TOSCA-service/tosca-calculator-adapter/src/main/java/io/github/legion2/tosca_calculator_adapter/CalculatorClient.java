@@ -0,0 +1,180 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_calculator_adapter;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.glassfish.jersey.apache.connector.ApacheClientProperties;
+import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
+import org.glassfish.jersey.client.ClientConfig;
+import org.glassfish.jersey.client.ClientProperties;
+
+import io.github.amyassist.amy.core.di.TaskScheduler;
+import io.github.amyassist.amy.core.di.annotation.Context;
+import io.github.amyassist.amy.core.di.annotation.PostConstruct;
+import io.github.amyassist.amy.core.di.annotation.PreDestroy;
+import io.github.amyassist.amy.core.di.annotation.Reference;
+import io.github.amyassist.amy.core.di.annotation.Service;
+
+/**
+ * The shared client of the calculator adapters. It keeps a pool of HTTP/1.1 keep-alive connections to the calculator,
+ * so the connections are reused by all calculations. The size of the pool and the timeout in milliseconds can be
+ * configured with the optional calculator.maxConnections and calculator.timeout properties.
+ * <p>
+ * If the optional calculator.batch.size property is greater than one, concurrent calculations are collected for
+ * calculator.batch.window milliseconds or until the batch size is reached and are sent as one request to the batch
+ * endpoint of the calculator.
+ * 
+ * @author Leon Kiefer
+ */
+@Service(CalculatorClient.class)
+public class CalculatorClient {
+	private static final int DEFAULT_MAX_CONNECTIONS = 20;
+	private static final int DEFAULT_TIMEOUT = 10000;
+	private static final long DEFAULT_BATCH_WINDOW = 5;
+
+	@Context("calculator.uri")
+	private String uri;
+
+	@Context(value = "calculator.maxConnections", optional = true)
+	private String maxConnections;
+
+	@Context(value = "calculator.timeout", optional = true)
+	private String timeout;
+
+	@Context(value = "calculator.batch.size", optional = true)
+	private String batchSize;
+
+	@Context(value = "calculator.batch.window", optional = true)
+	private String batchWindow;
+
+	@Reference
+	private TaskScheduler taskScheduler;
+
+	private Client client;
+
+	private WebTarget calculatorTarget;
+
+	private CalculatorBatcher batcher;
+
+	@PostConstruct
+	private void setup() {
+		int connections = this.maxConnections == null ? DEFAULT_MAX_CONNECTIONS
+				: Integer.parseInt(this.maxConnections);
+		int timeoutMillis = this.timeout == null ? DEFAULT_TIMEOUT : Integer.parseInt(this.timeout);
+
+		PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+		connectionManager.setMaxTotal(connections);
+		connectionManager.setDefaultMaxPerRoute(connections);
+
+		ClientConfig clientConfig = new ClientConfig().connectorProvider(new ApacheConnectorProvider())
+				.property(ApacheClientProperties.CONNECTION_MANAGER, connectionManager)
+				.property(ClientProperties.CONNECT_TIMEOUT, timeoutMillis)
+				.property(ClientProperties.READ_TIMEOUT, timeoutMillis)
+				.property(ClientProperties.ASYNC_THREADPOOL_SIZE, connections);
+		this.client = ClientBuilder.newClient(clientConfig);
+		this.calculatorTarget = this.client.target(this.uri).path("api/calculate");
+
+		if (this.batchSize != null && Integer.parseInt(this.batchSize) > 1) {
+			WebTarget batchTarget = this.calculatorTarget.path("batch");
+			long window = this.batchWindow == null ? DEFAULT_BATCH_WINDOW : Long.parseLong(this.batchWindow);
+			this.batcher = new CalculatorBatcher(Integer.parseInt(this.batchSize), window,
+					expressions -> batchTarget.request(MediaType.APPLICATION_JSON).rx()
+							.post(Entity.json(new BatchRequestModel(expressions)), BatchResponseModel.class)
+							.thenApply(response -> response.results),
+					this.taskScheduler);
+		}
+	}
+
+	@PreDestroy
+	private void close() {
+		if (this.batcher != null) {
+			this.batcher.close();
+		}
+		this.client.close();
+	}
+
+	/**
+	 * Calculate the expression and wait for the result.
+	 * 
+	 * @param expression
+	 *            the expression to calculate
+	 * @return the result
+	 */
+	float calculate(String expression) {
+		if (this.batcher != null) {
+			try {
+				return this.batcher.submit(expression).join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw e;
+			}
+		}
+		ResponseModel response = this.calculatorTarget.queryParam("expression", expression)
+				.request(MediaType.APPLICATION_JSON).get(ResponseModel.class);
+		return Float.parseFloat(response.result);
+	}
+
+	/**
+	 * Calculate the expression without blocking the caller.
+	 * 
+	 * @param expression
+	 *            the expression to calculate
+	 * @return the future result
+	 */
+	CompletableFuture<Float> calculateAsync(String expression) {
+		if (this.batcher != null) {
+			return this.batcher.submit(expression);
+		}
+		return this.calculatorTarget.queryParam("expression", expression).request(MediaType.APPLICATION_JSON).rx()
+				.get(ResponseModel.class).toCompletableFuture().thenApply(response -> Float.parseFloat(response.result));
+	}
+
+	static class ResponseModel {
+		public String result;
+		public String instance;
+	}
+
+	static class BatchRequestModel {
+		public List<String> expressions;
+
+		BatchRequestModel(List<String> expressions) {
+			this.expressions = expressions;
+		}
+	}
+
+	static class BatchResponseModel {
+		public List<ResultModel> results;
+		public String instance;
+	}
+
+	static class ResultModel {
+		public String result;
+		public String error;
+	}
+}
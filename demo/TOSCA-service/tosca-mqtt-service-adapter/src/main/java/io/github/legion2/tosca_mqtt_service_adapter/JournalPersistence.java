@@ -0,0 +1,360 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_mqtt_service_adapter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+
+/**
+ * Persistence of the MQTT client in one append-only journal file, which is mapped into memory. Each put and remove
+ * appends a record to the journal instead of creating or deleting a file. The live entries are also held in memory,
+ * so reads don't touch the journal. The journal is compacted by rewriting the live entries, when the removed entries
+ * take more space than the live entries, and when it is opened. The journal is deleted when it is closed without live
+ * entries, because the client id and so the name of the journal changes with each start.
+ * 
+ * Each record starts with its length, which is written after the rest of the record, so a partially written record
+ * at the end of the journal is ignored when it is replayed. The mapped journal survives a crash of the process, if
+ * {@code sync} is enabled, each record is also forced to the storage device.
+ * 
+ * @author Leon Kiefer
+ */
+class JournalPersistence implements MqttClientPersistence {
+	private static final byte PUT = 1;
+	private static final byte REMOVE = 2;
+
+	private static final int MIN_CAPACITY = 1 << 20;
+	private static final int MIN_COMPACTION_GARBAGE = 1 << 16;
+
+	private final Path directory;
+	private final boolean sync;
+
+	private final Map<String, Entry> entries = new LinkedHashMap<>();
+	private Path file;
+	private FileChannel channel;
+	private MappedByteBuffer journal;
+	private long liveBytes;
+	private long garbageBytes;
+
+	/**
+	 * @param directory
+	 *            the directory of the journal files
+	 * @param sync
+	 *            whether each record is forced to the storage device
+	 */
+	JournalPersistence(Path directory, boolean sync) {
+		this.directory = directory;
+		this.sync = sync;
+	}
+
+	@Override
+	public synchronized void open(String clientId, String serverURI) throws MqttPersistenceException {
+		String name = (clientId + "-" + serverURI).replaceAll("[^a-zA-Z0-9_-]", "");
+		this.file = this.directory.resolve(name + ".journal");
+		try {
+			Files.createDirectories(this.directory);
+			if (Files.exists(this.file)) {
+				this.replay(ByteBuffer.wrap(Files.readAllBytes(this.file)));
+			}
+			this.compact();
+		} catch (IOException e) {
+			throw new MqttPersistenceException(e);
+		}
+	}
+
+	private void replay(ByteBuffer buffer) {
+		while (buffer.remaining() >= Integer.BYTES) {
+			int length = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				// end of the journal or partially written record
+				return;
+			}
+			ByteBuffer record = (ByteBuffer) buffer.slice().limit(length);
+			buffer.position(buffer.position() + length);
+			byte type = record.get();
+			String key = new String(readBytes(record), StandardCharsets.UTF_8);
+			if (type == PUT) {
+				this.entries.put(key, new Entry(readBytes(record), readBytes(record)));
+			} else {
+				this.entries.remove(key);
+			}
+		}
+	}
+
+	private static byte[] readBytes(ByteBuffer record) {
+		byte[] bytes = new byte[record.getInt()];
+		record.get(bytes);
+		return bytes;
+	}
+
+	@Override
+	public synchronized void close() throws MqttPersistenceException {
+		this.checkOpen();
+		try {
+			this.journal.force();
+			this.channel.close();
+			if (this.entries.isEmpty()) {
+				Files.deleteIfExists(this.file);
+			}
+		} catch (IOException e) {
+			throw new MqttPersistenceException(e);
+		} finally {
+			this.channel = null;
+			this.journal = null;
+			this.entries.clear();
+		}
+	}
+
+	@Override
+	public synchronized void put(String key, MqttPersistable persistable) throws MqttPersistenceException {
+		this.checkOpen();
+		Entry entry = new Entry(copy(persistable.getHeaderBytes(), persistable.getHeaderOffset(),
+				persistable.getHeaderLength()),
+				copy(persistable.getPayloadBytes(), persistable.getPayloadOffset(), persistable.getPayloadLength()));
+		Entry previous = this.entries.put(key, entry);
+		if (this.append(PUT, key, entry)) {
+			this.liveBytes += recordSize(key, entry);
+			if (previous != null) {
+				this.garbage(recordSize(key, previous), 0);
+			}
+		}
+	}
+
+	private static byte[] copy(byte[] bytes, int offset, int length) {
+		if (bytes == null) {
+			return new byte[0];
+		}
+		byte[] copy = new byte[length];
+		System.arraycopy(bytes, offset, copy, 0, length);
+		return copy;
+	}
+
+	@Override
+	public synchronized MqttPersistable get(String key) throws MqttPersistenceException {
+		this.checkOpen();
+		return this.entries.get(key);
+	}
+
+	@Override
+	public synchronized void remove(String key) throws MqttPersistenceException {
+		this.checkOpen();
+		Entry previous = this.entries.remove(key);
+		if (previous == null) {
+			return;
+		}
+		if (this.append(REMOVE, key, null)) {
+			this.garbage(recordSize(key, previous), recordSize(key, null));
+		}
+	}
+
+	@Override
+	public synchronized Enumeration<String> keys() throws MqttPersistenceException {
+		this.checkOpen();
+		return Collections.enumeration(new ArrayList<>(this.entries.keySet()));
+	}
+
+	@Override
+	public synchronized void clear() throws MqttPersistenceException {
+		this.checkOpen();
+		this.entries.clear();
+		try {
+			this.compact();
+		} catch (IOException e) {
+			throw new MqttPersistenceException(e);
+		}
+	}
+
+	@Override
+	public synchronized boolean containsKey(String key) throws MqttPersistenceException {
+		this.checkOpen();
+		return this.entries.containsKey(key);
+	}
+
+	private void checkOpen() throws MqttPersistenceException {
+		if (this.channel == null) {
+			throw new MqttPersistenceException();
+		}
+	}
+
+	/**
+	 * Account for records which are no longer needed and compact the journal if there is too much garbage.
+	 * 
+	 * @param replacedBytes
+	 *            the size of the replaced or removed live record
+	 * @param removeBytes
+	 *            the size of the remove record
+	 */
+	private void garbage(long replacedBytes, long removeBytes) throws MqttPersistenceException {
+		this.liveBytes -= replacedBytes;
+		this.garbageBytes += replacedBytes + removeBytes;
+		if (this.garbageBytes > MIN_COMPACTION_GARBAGE && this.garbageBytes > this.liveBytes) {
+			try {
+				this.compact();
+			} catch (IOException e) {
+				throw new MqttPersistenceException(e);
+			}
+		}
+	}
+
+	/**
+	 * Append a record to the journal. If the journal is full, it is compacted instead, which already persists the
+	 * change because the entries in memory are updated before.
+	 * 
+	 * @return false if the journal was compacted
+	 */
+	private boolean append(byte type, String key, Entry entry) throws MqttPersistenceException {
+		int size = recordSize(key, entry);
+		if (this.journal.remaining() < size) {
+			try {
+				this.compact(size);
+			} catch (IOException e) {
+				throw new MqttPersistenceException(e);
+			}
+			return false;
+		}
+		writeRecord(this.journal, type, key, entry);
+		if (this.sync) {
+			this.journal.force();
+		}
+		return true;
+	}
+
+	/**
+	 * Write the record and then its length, so the record is complete before it becomes visible.
+	 */
+	private static void writeRecord(ByteBuffer buffer, byte type, String key, Entry entry) {
+		int start = buffer.position();
+		buffer.position(start + Integer.BYTES);
+		buffer.put(type);
+		byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+		buffer.putInt(keyBytes.length).put(keyBytes);
+		if (entry != null) {
+			buffer.putInt(entry.header.length).put(entry.header);
+			buffer.putInt(entry.payload.length).put(entry.payload);
+		}
+		buffer.putInt(start, buffer.position() - start - Integer.BYTES);
+	}
+
+	private static int recordSize(String key, Entry entry) {
+		int size = Integer.BYTES + 1 + Integer.BYTES + key.getBytes(StandardCharsets.UTF_8).length;
+		if (entry != null) {
+			size += 2 * Integer.BYTES + entry.header.length + entry.payload.length;
+		}
+		return size;
+	}
+
+	private void compact() throws IOException {
+		this.compact(0);
+	}
+
+	/**
+	 * Rewrite the live entries to a new journal and replace the old journal atomically.
+	 * 
+	 * @param reserve
+	 *            the number of bytes which must be free after the compaction
+	 */
+	private void compact(int reserve) throws IOException {
+		long live = 0;
+		for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+			live += recordSize(entry.getKey(), entry.getValue());
+		}
+		long capacity = Math.max(MIN_CAPACITY, 2 * (live + reserve));
+		if (capacity + Integer.BYTES > Integer.MAX_VALUE) {
+			throw new IOException("The journal is too large");
+		}
+
+		Path compacted = this.file.resolveSibling(this.file.getFileName() + ".compact");
+		try (FileChannel target = FileChannel.open(compacted, StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			MappedByteBuffer buffer = target.map(FileChannel.MapMode.READ_WRITE, 0, capacity + Integer.BYTES);
+			for (Map.Entry<String, Entry> entry : this.entries.entrySet()) {
+				writeRecord(buffer, PUT, entry.getKey(), entry.getValue());
+			}
+			buffer.force();
+		}
+		if (this.channel != null) {
+			this.channel.close();
+		}
+		Files.move(compacted, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+		this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		this.journal = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity + Integer.BYTES);
+		this.journal.position((int) live);
+		// the space for the zero length marking the end of the journal is never used by a record
+		this.journal.limit((int) capacity);
+		this.liveBytes = live;
+		this.garbageBytes = 0;
+	}
+
+	/**
+	 * A persisted header and payload.
+	 */
+	private static class Entry implements MqttPersistable {
+		private final byte[] header;
+		private final byte[] payload;
+
+		Entry(byte[] header, byte[] payload) {
+			this.header = header;
+			this.payload = payload;
+		}
+
+		@Override
+		public byte[] getHeaderBytes() {
+			return this.header;
+		}
+
+		@Override
+		public int getHeaderLength() {
+			return this.header.length;
+		}
+
+		@Override
+		public int getHeaderOffset() {
+			return 0;
+		}
+
+		@Override
+		public byte[] getPayloadBytes() {
+			return this.payload;
+		}
+
+		@Override
+		public int getPayloadLength() {
+			return this.payload.length;
+		}
+
+		@Override
+		public int getPayloadOffset() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,518 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_mqtt_service_adapter;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallback;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.slf4j.Logger;
+
+import io.github.legion2.messaging_adapter.AcknowledgingConsumer;
+import io.github.legion2.messaging_adapter.MessageConsumer;
+
+/**
+ * The paho client of one broker, which is shared by all adapter instances of the broker. The subscriptions of all
+ * adapters are routed through one topic trie, so a topic filter is subscribed at the broker as long as any adapter
+ * has a consumer for it.
+ * 
+ * The client connects asynchronously. Until the connection is established, published messages are buffered and
+ * subscriptions are only added to the topic trie, they are sent to the broker when the client is connected. A failed
+ * initial connect is retried with an exponential backoff, afterwards paho reconnects automatically. If the
+ * broker rejects a subscription, all consumers of the topic filter are removed from the trie again.
+ * 
+ * Received messages are acknowledged manually, when all consumers processed them. An {@link AcknowledgingConsumer}
+ * reports this itself, so the broker stops sending when its in-flight window is full instead of the callback thread
+ * being blocked. The acknowledgements are sent in the order the messages were received, as required by MQTT.
+ * 
+ * @author Leon Kiefer
+ */
+class MQTTConnection implements IMqttActionListener, MqttCallback {
+	private static final int DISCONNECTED_BUFFER_SIZE = 10000;
+
+	// all durations are given in seconds
+	private static final int CONNECTION_TIMEOUT = 10;
+	private static final int KEEP_ALIVE_INTERVAL = 5;
+	private static final int DISCONNECT_TIMEOUT = 2;
+	private static final int INITIAL_RETRY_DELAY = 1;
+	private static final int MAX_RETRY_DELAY = 60;
+
+	/**
+	 * schedules the retries of failed initial connects of all clients
+	 */
+	private static final ScheduledExecutorService RETRY_SCHEDULER = Executors
+			.newSingleThreadScheduledExecutor(runnable -> {
+				Thread thread = new Thread(runnable, "mqtt-connect-retry");
+				thread.setDaemon(true);
+				return thread;
+			});
+
+	private static final String CONNECT_CONTEXT = "Connect";
+	/**
+	 * the return code of a SUBACK for a rejected subscription
+	 */
+	private static final int SUBSCRIPTION_FAILURE = 0x80;
+
+	private final Logger logger;
+	private final String clientOptions;
+	private final MqttAsyncClient client;
+	private final MqttConnectOptions options;
+	private final CompletableFuture<Void> readiness = new CompletableFuture<>();
+
+	private final TopicTrie subscriptions = new TopicTrie();
+	private final List<PendingMessage> pendingMessages = new ArrayList<>();
+	private volatile boolean connected;
+	private volatile boolean disconnected;
+	/**
+	 * the delay in seconds before the next retry of the initial connect
+	 */
+	private int retryDelay = INITIAL_RETRY_DELAY;
+
+	/**
+	 * the number of completed deliveries, guarded by the lock of the monitor
+	 */
+	private final Object deliveryMonitor = new Object();
+	private long completedDeliveries;
+
+	/**
+	 * the received messages with quality of service 1 or 2 in arrival order, which are not acknowledged yet
+	 */
+	private final Deque<Acknowledgement> acknowledgements = new ArrayDeque<>();
+
+	/**
+	 * @return the description of the options the client was created with
+	 */
+	String getClientOptions() {
+		return this.clientOptions;
+	}
+
+	/**
+	 * Create the client and start connecting to the broker.
+	 * 
+	 * @param logger
+	 *            the logger for failed actions and consumers
+	 * @param brokerAddress
+	 *            the address of the broker
+	 * @param clientId
+	 *            the client id, which must be the same after a restart to resume the session
+	 * @param clientOptions
+	 *            the description of the options of the client, which is compared by adapters sharing the client
+	 * @param persistence
+	 *            the persistence of the client
+	 * @param maxInflight
+	 *            the maximum number of in-flight messages or null for the default
+	 */
+	MQTTConnection(Logger logger, String brokerAddress, String clientId, String clientOptions,
+			MqttClientPersistence persistence, Integer maxInflight) {
+		this.logger = logger;
+		this.clientOptions = clientOptions;
+		try {
+			this.client = new MqttAsyncClient(brokerAddress, clientId, persistence);
+			this.client.setCallback(this);
+			this.client.setManualAcks(true);
+		} catch (MqttException e) {
+			throw new IllegalStateException("Failed to initialize mqtt client", e);
+		}
+
+		DisconnectedBufferOptions disconnectedBufferOptions = new DisconnectedBufferOptions();
+		disconnectedBufferOptions.setBufferEnabled(true);
+		disconnectedBufferOptions.setPersistBuffer(true);
+		disconnectedBufferOptions.setBufferSize(DISCONNECTED_BUFFER_SIZE);
+		disconnectedBufferOptions.setDeleteOldestMessages(false);
+		this.client.setBufferOpts(disconnectedBufferOptions);
+
+		this.options = new MqttConnectOptions();
+		this.options.setCleanSession(false);
+		this.options.setConnectionTimeout(CONNECTION_TIMEOUT);
+		this.options.setKeepAliveInterval(KEEP_ALIVE_INTERVAL);
+		this.options.setAutomaticReconnect(true);
+		if (maxInflight != null) {
+			this.options.setMaxInflight(maxInflight);
+		}
+
+		try {
+			this.client.connect(this.options, CONNECT_CONTEXT, this);
+		} catch (MqttException e) {
+			throw new IllegalStateException("Error while connecting", e);
+		}
+	}
+
+	/**
+	 * Retry the failed initial connect after the current retry delay and double the delay for the next retry.
+	 * 
+	 * @param exception
+	 *            the cause of the failed connect
+	 */
+	private void retryConnect(Throwable exception) {
+		if (this.disconnected) {
+			return;
+		}
+		int delay = this.retryDelay;
+		this.retryDelay = Math.min(delay * 2, MAX_RETRY_DELAY);
+		this.logger.warn("Could not connect to Broker, retrying in " + delay + " seconds", exception);
+		RETRY_SCHEDULER.schedule(() -> {
+			if (this.disconnected) {
+				return;
+			}
+			try {
+				this.client.connect(this.options, CONNECT_CONTEXT, this);
+			} catch (MqttException e) {
+				this.retryConnect(e);
+			}
+		}, delay, TimeUnit.SECONDS);
+	}
+
+	/**
+	 * @return the stage which completes when the client is connected for the first time, the initial connect is
+	 *         retried until it succeeds or the client is disconnected
+	 */
+	CompletionStage<Void> getReadiness() {
+		return this.readiness;
+	}
+
+	/**
+	 * @return true if the client was connected, afterwards paho buffers the messages while the client is disconnected
+	 */
+	boolean isConnected() {
+		return this.connected;
+	}
+
+	/**
+	 * Publish the message or buffer it, if the client was not connected yet.
+	 * 
+	 * @param topic
+	 *            the topic of the message
+	 * @param message
+	 *            the message
+	 * @throws MqttException
+	 *             if the client could not publish the message
+	 * @throws IllegalStateException
+	 *             if the buffer is full
+	 */
+	void publish(String topic, MqttMessage message) throws MqttException {
+		if (!this.connected) {
+			synchronized (this.pendingMessages) {
+				if (!this.connected) {
+					if (this.pendingMessages.size() >= DISCONNECTED_BUFFER_SIZE) {
+						throw new IllegalStateException("The buffer for messages published before connecting is full");
+					}
+					this.pendingMessages.add(new PendingMessage(topic, message));
+					return;
+				}
+			}
+		}
+		this.client.publish(topic, message, "publish", this);
+	}
+
+	/**
+	 * @return the number of deliveries completed since the client was created
+	 */
+	long getCompletedDeliveries() {
+		synchronized (this.deliveryMonitor) {
+			return this.completedDeliveries;
+		}
+	}
+
+	/**
+	 * Wait until a delivery completes, so there is space in the in-flight window.
+	 * 
+	 * @param completedDeliveries
+	 *            the number of completed deliveries seen by the caller
+	 * @param timeout
+	 *            the maximum time to wait in milliseconds
+	 * @throws InterruptedException
+	 *             if the thread was interrupted while waiting
+	 */
+	void awaitDelivery(long completedDeliveries, long timeout) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + timeout;
+		synchronized (this.deliveryMonitor) {
+			long remaining = timeout;
+			while (this.completedDeliveries == completedDeliveries && remaining > 0) {
+				this.deliveryMonitor.wait(remaining);
+				remaining = deadline - System.currentTimeMillis();
+			}
+		}
+	}
+
+	/**
+	 * Subscribe all topic filters and publish the buffered messages.
+	 */
+	private void onConnected() {
+		synchronized (this.subscriptions) {
+			for (String topic : this.subscriptions.topicFilters()) {
+				try {
+					this.client.subscribe(topic, 2, new SubscribeContext(topic), this);
+				} catch (MqttException e) {
+					this.subscriptionFailed(topic, e);
+				}
+			}
+			synchronized (this.pendingMessages) {
+				for (PendingMessage pendingMessage : this.pendingMessages) {
+					try {
+						this.client.publish(pendingMessage.topic, pendingMessage.message, "publish", this);
+					} catch (MqttException e) {
+						this.logger.error("Error while publishing a buffered message", e);
+					}
+				}
+				this.pendingMessages.clear();
+				this.connected = true;
+			}
+		}
+		this.readiness.complete(null);
+	}
+
+	/**
+	 * @return the client, which uses this connection as callback
+	 */
+	MqttAsyncClient getClient() {
+		return this.client;
+	}
+
+	/**
+	 * Only the first consumer of a topic filter subscribes at the broker.
+	 * 
+	 * @param topic
+	 *            the topic filter
+	 * @param consumer
+	 *            the consumer
+	 */
+	void subscribe(String topic, MessageConsumer consumer) {
+		synchronized (this.subscriptions) {
+			if (this.subscriptions.add(topic, consumer) && this.connected) {
+				try {
+					this.client.subscribe(topic, 2, new SubscribeContext(topic), this);
+				} catch (MqttException e) {
+					this.subscriptions.remove(topic, consumer);
+					throw new IllegalStateException("Error while subscribing", e);
+				}
+			}
+		}
+	}
+
+	private void subscriptionFailed(String topic, Throwable exception) {
+		synchronized (this.subscriptions) {
+			this.subscriptions.removeAll(topic);
+		}
+		this.logger.error("Error while subscribing " + topic, exception);
+	}
+
+	/**
+	 * Only the last consumer of a topic filter unsubscribes at the broker.
+	 * 
+	 * @param topic
+	 *            the topic filter
+	 * @param consumer
+	 *            the consumer
+	 * @throws IllegalArgumentException
+	 *             if the consumer is not subscribed to the topic filter
+	 */
+	void unsubscribe(String topic, MessageConsumer consumer) {
+		synchronized (this.subscriptions) {
+			if (this.subscriptions.remove(topic, consumer) && this.connected) {
+				try {
+					this.client.unsubscribe(topic, "Unsubscribe", this);
+				} catch (MqttException e) {
+					throw new IllegalStateException("Error while unsubscribing", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Disconnect from the broker.
+	 */
+	void disconnect() {
+		this.disconnected = true;
+		if (!this.connected) {
+			// stops the retries of the initial connect
+			return;
+		}
+		try {
+			this.client.disconnect(DISCONNECT_TIMEOUT * 1000L);
+		} catch (MqttException | IllegalStateException e) {
+			this.logger.error("Exception while disconnect", e);
+		}
+	}
+
+	@Override
+	public void onSuccess(IMqttToken asyncActionToken) {
+		Object userContext = asyncActionToken.getUserContext();
+		if (CONNECT_CONTEXT.equals(userContext)) {
+			if (this.disconnected) {
+				// the retried connect succeeded after the client was disconnected
+				try {
+					this.client.disconnect(DISCONNECT_TIMEOUT * 1000L);
+				} catch (MqttException e) {
+					this.logger.error("Exception while disconnect", e);
+				}
+				return;
+			}
+			this.onConnected();
+		} else if (userContext instanceof SubscribeContext) {
+			int[] grantedQos = asyncActionToken.getGrantedQos();
+			if (grantedQos != null && grantedQos.length > 0 && grantedQos[0] == SUBSCRIPTION_FAILURE) {
+				this.subscriptionFailed(((SubscribeContext) userContext).topic,
+						new IllegalStateException("The broker rejected the subscription"));
+			}
+		}
+	}
+
+	@Override
+	public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+		if (CONNECT_CONTEXT.equals(asyncActionToken.getUserContext())) {
+			this.retryConnect(exception);
+			return;
+		}
+		if (asyncActionToken.getUserContext() instanceof SubscribeContext) {
+			this.subscriptionFailed(((SubscribeContext) asyncActionToken.getUserContext()).topic, exception);
+			return;
+		}
+		this.logger.error("Async action failed", exception);
+	}
+
+	@Override
+	public void connectionLost(Throwable cause) {
+		this.logger.warn("Connection Lost", cause);
+	}
+
+	@Override
+	public void messageArrived(String topic, MqttMessage message) throws Exception {
+		Set<MessageConsumer> consumers = this.subscriptions.match(topic);
+		// the additional count is released after all consumers got the message
+		Acknowledgement acknowledgement = new Acknowledgement(message, consumers.size() + 1);
+		if (message.getQos() > 0) {
+			synchronized (this.acknowledgements) {
+				this.acknowledgements.add(acknowledgement);
+			}
+		}
+		for (MessageConsumer consumer : consumers) {
+			Runnable processed = acknowledgement.processedOnce();
+			try {
+				// each consumer owns its buffer, the content is shared
+				if (consumer instanceof AcknowledgingConsumer) {
+					((AcknowledgingConsumer) consumer).consume(ByteBuffer.wrap(message.getPayload()), topic, processed);
+				} else {
+					consumer.consume(ByteBuffer.wrap(message.getPayload()), topic);
+					processed.run();
+				}
+			} catch (RuntimeException e) {
+				// an exception thrown here would close the connection
+				this.logger.error("Consumer failed to consume message of topic " + topic, e);
+				// does nothing if the consumer reported the message as processed before it failed
+				processed.run();
+			}
+		}
+		acknowledgement.processed();
+	}
+
+	/**
+	 * Acknowledge the processed messages at the head of the received messages.
+	 */
+	private void acknowledgeProcessed() {
+		synchronized (this.acknowledgements) {
+			while (!this.acknowledgements.isEmpty() && this.acknowledgements.peek().isProcessed()) {
+				MqttMessage message = this.acknowledgements.poll().message;
+				try {
+					this.client.messageArrivedComplete(message.getId(), message.getQos());
+				} catch (MqttException e) {
+					this.logger.warn("Could not acknowledge message " + message.getId(), e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void deliveryComplete(IMqttDeliveryToken token) {
+		synchronized (this.deliveryMonitor) {
+			this.completedDeliveries++;
+			this.deliveryMonitor.notifyAll();
+		}
+	}
+
+	/**
+	 * The number of consumers, which did not process a received message yet.
+	 */
+	private class Acknowledgement {
+		private final MqttMessage message;
+		private final AtomicInteger remaining;
+
+		Acknowledgement(MqttMessage message, int consumers) {
+			this.message = message;
+			this.remaining = new AtomicInteger(consumers);
+		}
+
+		/**
+		 * @return the report of one consumer, which counts only once even if it is run multiple times
+		 */
+		Runnable processedOnce() {
+			AtomicBoolean processed = new AtomicBoolean();
+			return () -> {
+				if (processed.compareAndSet(false, true)) {
+					this.processed();
+				}
+			};
+		}
+
+		void processed() {
+			if (this.remaining.decrementAndGet() == 0 && this.message.getQos() > 0) {
+				MQTTConnection.this.acknowledgeProcessed();
+			}
+		}
+
+		boolean isProcessed() {
+			return this.remaining.get() <= 0;
+		}
+	}
+
+	private static class SubscribeContext {
+		private final String topic;
+
+		SubscribeContext(String topic) {
+			this.topic = topic;
+		}
+	}
+
+	private static class PendingMessage {
+		private final String topic;
+		private final MqttMessage message;
+
+		PendingMessage(String topic, MqttMessage message) {
+			this.topic = topic;
+			this.message = message;
+		}
+	}
+}
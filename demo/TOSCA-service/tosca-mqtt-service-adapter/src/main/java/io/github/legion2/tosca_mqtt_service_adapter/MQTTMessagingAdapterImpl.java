@@ -16,20 +16,23 @@
 
 package io.github.legion2.tosca_mqtt_service_adapter;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
-import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
-import org.eclipse.paho.client.mqttv3.IMqttActionListener;
-import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.IMqttToken;
-import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttClientPersistence;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 import org.eclipse.paho.client.mqttv3.persist.MqttDefaultFilePersistence;
 import org.slf4j.Logger;
 
@@ -38,146 +41,269 @@ import io.github.amyassist.amy.core.di.annotation.PostConstruct;
 import io.github.amyassist.amy.core.di.annotation.PreDestroy;
 import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.annotation.Service;
+import io.github.legion2.messaging_adapter.ConnectionRegistry;
+import io.github.legion2.messaging_adapter.DeliveryStage;
+import io.github.legion2.messaging_adapter.Message;
 import io.github.legion2.messaging_adapter.MessageConsumer;
 import io.github.legion2.messaging_adapter.MessagingAdapter;
+import io.github.legion2.messaging_adapter.OverflowPolicy;
+import io.github.legion2.messaging_adapter.PartialPublishException;
+import io.github.legion2.messaging_adapter.Payloads;
 
 /**
  * Implementation of the MessagingAdapter using eclipse paho. Based on
  * https://github.com/AmyAssist/Amy/blob/dev/amy-message-hub/src/main/java/io/github/amyassist/amy/messagehub/MQTTAdapter.java
  * 
+ * All adapter instances with the same broker and client id share one client.
+ * The client id is given by the {@code clientId} context or derived from the
+ * broker and the client options, so adapters with different options get
+ * different clients. The id is the same after a restart, so the client resumes
+ * its session and the messages stored in its persistence. Adapters which use
+ * the same client id with different options are rejected.
+ * 
  * @author Leon Kiefer
  */
 @Service(MessagingAdapter.class)
-public class MQTTMessagingAdapterImpl implements MessagingAdapter, IMqttActionListener, MqttCallback {
+public class MQTTMessagingAdapterImpl implements MessagingAdapter {
 
-	private static final int DISCONNECTED_BUFFER_SIZE = 10000;
+	private static final String DEFAULT_PERSISTENCE_DIRECTORY = ".mqtt-persistence";
 
 	// all durations are given in seconds
-	private static final int CONNECTION_TIMEOUT = 10;
-	private static final int KEEP_ALIVE_INTERVAL = 5;
-	private static final int DISCONNECT_TIMEOUT = 2;
+	private static final int INFLIGHT_WAIT = 1;
+
+	private static final int DEFAULT_DELIVERY_THREADS = 4;
+
+	private static final ConnectionRegistry<MQTTConnection> CONNECTIONS = new ConnectionRegistry<>(
+			MQTTConnection::disconnect);
 
-	private MqttAsyncClient client;
-	private MqttConnectOptions options;
-	private IMqttToken connectToken;
+	private MQTTConnection connection;
 
 	@Context("brokerAddress")
 	private String brokerAddress;
 
-	private MessageConsumer consumer;
+	@Context(value = "clientId", optional = true)
+	private String clientId;
+
+	@Context(value = "persistence", optional = true)
+	private String persistence;
+
+	@Context(value = "persistence.directory", optional = true)
+	private String persistenceDirectory;
+
+	@Context(value = "persistence.sync", optional = true)
+	private String persistenceSync;
+
+	@Context(value = "publisher.maxInflight", optional = true)
+	private String publisherMaxInflight;
+
+	@Context(value = "delivery.queueSize", optional = true)
+	private String deliveryQueueSize;
+
+	@Context(value = "delivery.overflow", optional = true)
+	private String deliveryOverflow;
+
+	@Context(value = "delivery.threads", optional = true)
+	private String deliveryThreads;
+
+	@Context(value = "delivery.executor", optional = true)
+	private Executor deliveryExecutor;
+
+	/**
+	 * the consumers of the delivery stage for each subscribed consumer and the
+	 * topic filters of the consumer
+	 */
+	private final Map<MessageConsumer, MessageConsumer> deliveryConsumers = new HashMap<>();
+	private final Map<MessageConsumer, List<String>> topicFilters = new HashMap<>();
+
+	private DeliveryStage deliveryStage;
 
 	@Reference
 	private Logger logger;
 
+	/**
+	 * Acquire the shared connection of the broker without waiting for it to be
+	 * established.
+	 * 
+	 * @return the readiness of the connection
+	 */
 	@PostConstruct
-	private void init() {
-
-		Path persistencePath = Paths.get(".mqtt-persistence");
-
-		try {
-			this.client = new MqttAsyncClient(this.brokerAddress, UUID.randomUUID().toString(),
-					new MqttDefaultFilePersistence(persistencePath.toAbsolutePath().toString()));
-			this.client.setCallback(this);
-		} catch (MqttException e) {
-			throw new IllegalStateException("Failed to initialize mqtt client", e);
+	private CompletionStage<Void> init() {
+		if (this.deliveryQueueSize != null) {
+			this.deliveryStage = new DeliveryStage("mqtt", this.deliveryExecutor,
+					this.deliveryThreads == null ? DEFAULT_DELIVERY_THREADS : Integer.parseInt(this.deliveryThreads),
+					Integer.parseInt(this.deliveryQueueSize),
+					this.deliveryOverflow == null ? OverflowPolicy.BLOCK : OverflowPolicy.valueOf(this.deliveryOverflow),
+					(topic, e) -> this.logger.error("Consumer failed to consume message of topic " + topic, e));
 		}
 
-		DisconnectedBufferOptions disconnectedBufferOptions = new DisconnectedBufferOptions();
-		disconnectedBufferOptions.setBufferEnabled(true);
-		disconnectedBufferOptions.setPersistBuffer(true);
-		disconnectedBufferOptions.setBufferSize(DISCONNECTED_BUFFER_SIZE);
-		disconnectedBufferOptions.setDeleteOldestMessages(false);
-		this.client.setBufferOpts(disconnectedBufferOptions);
+		String persistenceType = this.persistence == null ? "file" : this.persistence;
+		Path persistencePath = Paths
+				.get(this.persistenceDirectory == null ? DEFAULT_PERSISTENCE_DIRECTORY : this.persistenceDirectory)
+				.toAbsolutePath();
+		boolean sync = Boolean.parseBoolean(this.persistenceSync);
+		Integer maxInflight = this.publisherMaxInflight == null ? null : Integer.valueOf(this.publisherMaxInflight);
 
-		this.options = new MqttConnectOptions();
-		this.options.setCleanSession(false);
-		this.options.setConnectionTimeout(CONNECTION_TIMEOUT);
-		this.options.setKeepAliveInterval(KEEP_ALIVE_INTERVAL);
-		this.options.setAutomaticReconnect(true);
-
-		this.connect();
-		try {
-			this.connectToken.waitForCompletion();
-		} catch (MqttException e) {
-			throw new IllegalStateException("Error while waiting for connection", e);
+		String options = String.join(" ", persistenceType, persistencePath.toString(), String.valueOf(sync),
+				String.valueOf(maxInflight));
+		// the derived client id differs for different options, so these adapters get different clients
+		String id = this.clientId != null ? this.clientId
+				: UUID.nameUUIDFromBytes((this.brokerAddress + " " + options).getBytes(StandardCharsets.UTF_8))
+						.toString().replace("-", "");
+		this.connection = CONNECTIONS.acquire(this.brokerAddress + " " + id, () -> new MQTTConnection(this.logger,
+				this.brokerAddress, id, options, createPersistence(persistenceType, persistencePath, sync),
+				maxInflight));
+		if (!this.connection.getClientOptions().equals(options)) {
+			CONNECTIONS.release(this.connection);
+			if (this.deliveryStage != null) {
+				this.deliveryStage.close();
+			}
+			throw new IllegalStateException("The client " + id + " of the broker " + this.brokerAddress
+					+ " is already used with the options [" + this.connection.getClientOptions()
+					+ "], which differ from [" + options + "]");
 		}
+		return this.connection.getReadiness();
 	}
 
-	private void connect() {
-		try {
-			this.connectToken = this.client.connect(this.options, null, this);
-		} catch (MqttException e) {
-			throw new IllegalStateException("Error while connecting", e);
+	/**
+	 * Create the persistence selected by the {@code persistence} context: {@code file} (default) uses a file per
+	 * message, {@code memory} keeps the messages only in memory and {@code journal} appends them to a memory-mapped
+	 * journal.
+	 */
+	private static MqttClientPersistence createPersistence(String persistenceType, Path persistencePath,
+			boolean sync) {
+		switch (persistenceType) {
+		case "file":
+			return new MqttDefaultFilePersistence(persistencePath.toString());
+		case "memory":
+			return new MemoryPersistence();
+		case "journal":
+			return new JournalPersistence(persistencePath, sync);
+		default:
+			throw new IllegalStateException("Unknown persistence " + persistenceType);
 		}
 	}
 
 	@PreDestroy
 	private void disconnect() {
-		try {
-			this.client.disconnect(DISCONNECT_TIMEOUT * 1000L);
-		} catch (MqttException | IllegalStateException e) {
-			this.logger.error("Exception while disconnect", e);
+		synchronized (this.deliveryConsumers) {
+			for (Map.Entry<MessageConsumer, List<String>> entry : this.topicFilters.entrySet()) {
+				MessageConsumer deliveryConsumer = this.deliveryConsumers.get(entry.getKey());
+				for (String topic : entry.getValue()) {
+					try {
+						this.connection.unsubscribe(topic, deliveryConsumer);
+					} catch (IllegalStateException e) {
+						this.logger.warn("Could not unsubscribe from " + topic, e);
+					}
+				}
+			}
+			this.topicFilters.clear();
+			this.deliveryConsumers.clear();
+		}
+		CONNECTIONS.release(this.connection);
+		if (this.deliveryStage != null) {
+			this.deliveryStage.close();
 		}
 	}
 
-	public void publish(String topic, String payload, int qualityOfService, boolean retain) {
-		MqttMessage msg = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
-		msg.setQos(qualityOfService);
-		msg.setRetained(retain);
+	@Override
+	public void publish(String topic, ByteBuffer payload, int qualityOfService, boolean retain) {
 		try {
-			this.client.publish(topic, msg, "publish", this);
+			this.connection.publish(topic, toMqttMessage(payload, qualityOfService, retain));
 		} catch (MqttException e) {
 			throw new IllegalStateException("Error while publishing.", e);
 		}
 	}
 
-	public void subscribe(String topic, MessageConsumer consumer) {
+	/**
+	 * All messages are handed to the client without waiting for their delivery,
+	 * so up to {@code publisher.maxInflight} messages are in flight at once. If
+	 * the in-flight window is full, the next completed delivery is awaited
+	 * before the message is handed over again. Before the client is connected,
+	 * the messages are buffered. The messages are handed over in order, if it
+	 * fails a {@link PartialPublishException} reports how many were handed
+	 * over.
+	 */
+	@Override
+	public void publishAll(Collection<Message> messages) {
+		if (!this.connection.isConnected()) {
+			MessagingAdapter.super.publishAll(messages);
+			return;
+		}
+		int published = 0;
 		try {
-			this.client.subscribe(topic, 2, "Subscribe", this);
-			this.consumer = consumer;
+			for (Message message : messages) {
+				MqttMessage msg = toMqttMessage(message.getPayload(), message.getQualityOfService(),
+						message.isRetain());
+				long completedDeliveries = this.connection.getCompletedDeliveries();
+				while (!this.tryPublish(message.getTopic(), msg)) {
+					this.connection.awaitDelivery(completedDeliveries, INFLIGHT_WAIT * 1000L);
+					completedDeliveries = this.connection.getCompletedDeliveries();
+				}
+				published++;
+			}
 		} catch (MqttException e) {
-			throw new IllegalStateException("Error while subscribing", e);
+			throw published == 0 ? new IllegalStateException("Error while publishing.", e)
+					: new PartialPublishException(published, e);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw published == 0 ? new IllegalStateException("Interrupted while publishing.", e)
+					: new PartialPublishException(published, e);
 		}
 	}
 
-	public void unsubscribe(String topic, MessageConsumer consumer) {
+	private boolean tryPublish(String topic, MqttMessage msg) throws MqttException {
 		try {
-			this.client.unsubscribe(topic, "Unsubscribe", this);
-			this.consumer = null;
+			this.connection.getClient().publish(topic, msg, "publish", this.connection);
+			return true;
 		} catch (MqttException e) {
-			throw new IllegalStateException("Error while unsubscribing", e);
+			if (e.getReasonCode() == MqttException.REASON_CODE_MAX_INFLIGHT) {
+				return false;
+			}
+			throw e;
 		}
 	}
 
-	public void onSuccess(IMqttToken asyncActionToken) {
-		if (asyncActionToken.isComplete() && asyncActionToken.equals(this.connectToken)) {
-			this.connectToken = null;
-		}
-	}
-
-	public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-		if (asyncActionToken.equals(this.connectToken)) {
-			this.connectToken = null;
-			this.logger.error("Could not connect to Broker");
-		}
-		this.logger.error("Async action failed", exception);
-	}
-
-	@Override
-	public void connectionLost(Throwable cause) {
-		this.logger.warn("Connection Lost", cause);
+	private static MqttMessage toMqttMessage(ByteBuffer payload, int qualityOfService, boolean retain) {
+		MqttMessage msg = new MqttMessage(Payloads.toArray(payload));
+		msg.setQos(qualityOfService);
+		msg.setRetained(retain);
+		return msg;
 	}
 
+	/**
+	 * The consumer is subscribed at the shared connection, wrapped by the
+	 * delivery stage if it is configured.
+	 */
 	@Override
-	public void messageArrived(String topic, MqttMessage message) throws Exception {
-		if (this.consumer != null) {
-			this.consumer.consumer(new String(message.getPayload(), StandardCharsets.UTF_8), topic);
+	public void subscribe(String topic, MessageConsumer consumer) {
+		synchronized (this.deliveryConsumers) {
+			MessageConsumer deliveryConsumer = this.deliveryConsumers.computeIfAbsent(consumer,
+					c -> this.deliveryStage == null ? c : this.deliveryStage.subscription(c));
+			try {
+				this.connection.subscribe(topic, deliveryConsumer);
+			} catch (IllegalStateException e) {
+				if (!this.topicFilters.containsKey(consumer)) {
+					this.deliveryConsumers.remove(consumer);
+				}
+				throw e;
+			}
+			this.topicFilters.computeIfAbsent(consumer, c -> new ArrayList<>()).add(topic);
 		}
 	}
 
 	@Override
-	public void deliveryComplete(IMqttDeliveryToken token) {
-		// nothing to do here
-		
+	public void unsubscribe(String topic, MessageConsumer consumer) {
+		synchronized (this.deliveryConsumers) {
+			List<String> topics = this.topicFilters.get(consumer);
+			if (topics == null || !topics.contains(topic)) {
+				throw new IllegalArgumentException("The consumer is not subscribed to " + topic);
+			}
+			this.connection.unsubscribe(topic, this.deliveryConsumers.get(consumer));
+			topics.remove(topic);
+			if (topics.isEmpty()) {
+				this.topicFilters.remove(consumer);
+				this.deliveryConsumers.remove(consumer);
+			}
+		}
 	}
 }
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_mqtt_service_adapter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.legion2.messaging_adapter.MessageConsumer;
+
+/**
+ * Trie of MQTT topic filters and their consumers. The levels of a topic filter are the nodes of the trie, including
+ * the single level wildcard {@code +} and the multi level wildcard {@code #}. The trie is immutable and replaced on
+ * each change, so topics are matched lock-free in the depth of the topic while consumers subscribe and unsubscribe
+ * concurrently.
+ * 
+ * @author Leon Kiefer
+ */
+class TopicTrie {
+	private static final String SINGLE_LEVEL_WILDCARD = "+";
+	private static final String MULTI_LEVEL_WILDCARD = "#";
+
+	private volatile Node root = new Node(Collections.emptyMap(), Collections.emptyList());
+
+	/**
+	 * Add a consumer for the topic filter.
+	 * 
+	 * @param topicFilter
+	 *            the topic filter
+	 * @param consumer
+	 *            the consumer
+	 * @return true if this is the first consumer of the topic filter
+	 */
+	synchronized boolean add(String topicFilter, MessageConsumer consumer) {
+		String[] levels = topicFilter.split("/", -1);
+		boolean first = this.root.consumers(levels, 0).isEmpty();
+		this.root = this.root.with(levels, 0, consumer);
+		return first;
+	}
+
+	/**
+	 * Remove a consumer of the topic filter.
+	 * 
+	 * @param topicFilter
+	 *            the topic filter
+	 * @param consumer
+	 *            the consumer
+	 * @return true if this was the last consumer of the topic filter
+	 * @throws IllegalArgumentException
+	 *             if the consumer was not added for the topic filter
+	 */
+	synchronized boolean remove(String topicFilter, MessageConsumer consumer) {
+		String[] levels = topicFilter.split("/", -1);
+		List<MessageConsumer> consumers = this.root.consumers(levels, 0);
+		if (!consumers.contains(consumer)) {
+			throw new IllegalArgumentException("The consumer is not subscribed to " + topicFilter);
+		}
+		this.root = this.root.without(levels, 0, consumer);
+		return consumers.size() == 1;
+	}
+
+	/**
+	 * Remove all consumers of the topic filter.
+	 * 
+	 * @param topicFilter
+	 *            the topic filter
+	 * @return the removed consumers
+	 */
+	synchronized List<MessageConsumer> removeAll(String topicFilter) {
+		String[] levels = topicFilter.split("/", -1);
+		List<MessageConsumer> consumers = this.root.consumers(levels, 0);
+		for (MessageConsumer consumer : consumers) {
+			this.root = this.root.without(levels, 0, consumer);
+		}
+		return consumers;
+	}
+
+	/**
+	 * Find the consumers of all topic filters matching the topic. A consumer which is added for multiple matching
+	 * topic filters is only returned once.
+	 * 
+	 * @param topic
+	 *            the topic of a message
+	 * @return the consumers of the message
+	 */
+	Set<MessageConsumer> match(String topic) {
+		Set<MessageConsumer> consumers = new LinkedHashSet<>();
+		String[] levels = topic.split("/", -1);
+		// topics starting with $ are not matched by filters starting with a wildcard
+		this.root.match(levels, 0, !topic.startsWith("$"), consumers);
+		return consumers;
+	}
+
+	/**
+	 * @return all topic filters with at least one consumer
+	 */
+	List<String> topicFilters() {
+		List<String> topicFilters = new ArrayList<>();
+		this.root.collect(null, topicFilters);
+		return topicFilters;
+	}
+
+	private static class Node {
+		private final Map<String, Node> children;
+		private final List<MessageConsumer> consumers;
+
+		Node(Map<String, Node> children, List<MessageConsumer> consumers) {
+			this.children = children;
+			this.consumers = consumers;
+		}
+
+		List<MessageConsumer> consumers(String[] levels, int depth) {
+			if (depth == levels.length) {
+				return this.consumers;
+			}
+			Node child = this.children.get(levels[depth]);
+			return child == null ? Collections.emptyList() : child.consumers(levels, depth + 1);
+		}
+
+		Node with(String[] levels, int depth, MessageConsumer consumer) {
+			if (depth == levels.length) {
+				List<MessageConsumer> newConsumers = new ArrayList<>(this.consumers);
+				newConsumers.add(consumer);
+				return new Node(this.children, Collections.unmodifiableList(newConsumers));
+			}
+			Node child = this.children.getOrDefault(levels[depth],
+					new Node(Collections.emptyMap(), Collections.emptyList()));
+			Map<String, Node> newChildren = new HashMap<>(this.children);
+			newChildren.put(levels[depth], child.with(levels, depth + 1, consumer));
+			return new Node(Collections.unmodifiableMap(newChildren), this.consumers);
+		}
+
+		Node without(String[] levels, int depth, MessageConsumer consumer) {
+			if (depth == levels.length) {
+				List<MessageConsumer> newConsumers = new ArrayList<>(this.consumers);
+				newConsumers.remove(consumer);
+				return new Node(this.children, Collections.unmodifiableList(newConsumers));
+			}
+			Node child = this.children.get(levels[depth]).without(levels, depth + 1, consumer);
+			Map<String, Node> newChildren = new HashMap<>(this.children);
+			if (child.isEmpty()) {
+				newChildren.remove(levels[depth]);
+			} else {
+				newChildren.put(levels[depth], child);
+			}
+			return new Node(Collections.unmodifiableMap(newChildren), this.consumers);
+		}
+
+		void collect(String topicFilter, List<String> result) {
+			if (!this.consumers.isEmpty()) {
+				result.add(topicFilter);
+			}
+			for (Map.Entry<String, Node> child : this.children.entrySet()) {
+				child.getValue().collect(topicFilter == null ? child.getKey() : topicFilter + "/" + child.getKey(),
+						result);
+			}
+		}
+
+		private boolean isEmpty() {
+			return this.children.isEmpty() && this.consumers.isEmpty();
+		}
+
+		void match(String[] levels, int depth, boolean wildcards, Set<MessageConsumer> result) {
+			if (wildcards) {
+				Node multiLevel = this.children.get(MULTI_LEVEL_WILDCARD);
+				if (multiLevel != null) {
+					// the multi level wildcard also matches the parent level
+					result.addAll(multiLevel.consumers);
+				}
+			}
+			if (depth == levels.length) {
+				result.addAll(this.consumers);
+				return;
+			}
+			Node child = this.children.get(levels[depth]);
+			if (child != null) {
+				child.match(levels, depth + 1, true, result);
+			}
+			if (wildcards) {
+				Node singleLevel = this.children.get(SINGLE_LEVEL_WILDCARD);
+				if (singleLevel != null) {
+					singleLevel.match(levels, depth + 1, true, result);
+				}
+			}
+		}
+	}
+}
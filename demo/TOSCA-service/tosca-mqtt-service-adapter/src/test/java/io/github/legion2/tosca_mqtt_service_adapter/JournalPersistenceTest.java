@@ -0,0 +1,191 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_mqtt_service_adapter;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+
+import org.eclipse.paho.client.mqttv3.MqttPersistable;
+import org.eclipse.paho.client.mqttv3.MqttPersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests for the {@link JournalPersistence}
+ * 
+ * @author Leon Kiefer
+ */
+class JournalPersistenceTest {
+	private static final String CLIENT_ID = "client";
+	private static final String SERVER_URI = "tcp://localhost:1883";
+
+	@TempDir
+	Path directory;
+
+	private Path file;
+
+	@BeforeEach
+	void setup() {
+		this.file = this.directory.resolve("client-tcplocalhost1883.journal");
+	}
+
+	@Test
+	void testReopen() throws MqttPersistenceException {
+		JournalPersistence persistence = this.open();
+		persistence.put("a", persistable("header-a", "payload-a"));
+		persistence.put("b", persistable("header-b", "payload-b"));
+		persistence.remove("a");
+		persistence.close();
+
+		JournalPersistence reopened = this.open();
+		assertThat(Collections.list(reopened.keys()), contains("b"));
+		assertThat(payload(reopened.get("b")), is("payload-b"));
+		reopened.close();
+	}
+
+	@Test
+	void testReplayAfterTruncatedRecord() throws MqttPersistenceException, IOException {
+		JournalPersistence persistence = this.open();
+		persistence.put("a", persistable("header-a", "payload-a"));
+		persistence.put("b", persistable("header-b", "payload-b"));
+		persistence.close();
+
+		int records = recordSize("a", "header-a", "payload-a") + recordSize("b", "header-b", "payload-b");
+		try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+			channel.truncate(records - 3);
+		}
+
+		JournalPersistence reopened = this.open();
+		assertThat(Collections.list(reopened.keys()), contains("a"));
+		assertThat(payload(reopened.get("a")), is("payload-a"));
+
+		reopened.put("c", persistable("header-c", "payload-c"));
+		reopened.close();
+		JournalPersistence compacted = this.open();
+		assertThat(Collections.list(compacted.keys()), contains("a", "c"));
+		compacted.close();
+	}
+
+	@Test
+	void testCompaction() throws MqttPersistenceException, IOException {
+		JournalPersistence persistence = this.open();
+		String payload = String.join("", Collections.nCopies(1024, "x"));
+		for (int i = 0; i < 200; i++) {
+			persistence.put("k", persistable("header", payload + i));
+		}
+
+		assertThat(this.countRecords(), lessThan(100));
+		persistence.close();
+
+		JournalPersistence reopened = this.open();
+		assertThat(Collections.list(reopened.keys()), contains("k"));
+		assertThat(payload(reopened.get("k")), is(payload + 199));
+		assertThat(this.countRecords(), is(1));
+		reopened.close();
+	}
+
+	@Test
+	void testCloseDeletesEmptyJournal() throws MqttPersistenceException {
+		JournalPersistence persistence = this.open();
+		persistence.put("a", persistable("header-a", "payload-a"));
+		persistence.close();
+		assertThat(Files.exists(this.file), is(true));
+
+		JournalPersistence reopened = this.open();
+		reopened.remove("a");
+		reopened.close();
+		assertThat(Files.exists(this.file), is(false));
+	}
+
+	private JournalPersistence open() throws MqttPersistenceException {
+		JournalPersistence persistence = new JournalPersistence(this.directory, false);
+		persistence.open(CLIENT_ID, SERVER_URI);
+		return persistence;
+	}
+
+	/**
+	 * @return the number of complete records at the start of the journal
+	 */
+	private int countRecords() throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(this.file));
+		int count = 0;
+		while (buffer.remaining() >= Integer.BYTES) {
+			int length = buffer.getInt();
+			if (length <= 0 || length > buffer.remaining()) {
+				break;
+			}
+			buffer.position(buffer.position() + length);
+			count++;
+		}
+		return count;
+	}
+
+	private static int recordSize(String key, String header, String payload) {
+		return Integer.BYTES + 1 + 3 * Integer.BYTES + key.length() + header.length() + payload.length();
+	}
+
+	private static String payload(MqttPersistable persistable) throws MqttPersistenceException {
+		return new String(persistable.getPayloadBytes(), persistable.getPayloadOffset(),
+				persistable.getPayloadLength(), StandardCharsets.UTF_8);
+	}
+
+	private static MqttPersistable persistable(String header, String payload) {
+		byte[] headerBytes = header.getBytes(StandardCharsets.UTF_8);
+		byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+		return new MqttPersistable() {
+			@Override
+			public byte[] getHeaderBytes() {
+				return headerBytes;
+			}
+
+			@Override
+			public int getHeaderLength() {
+				return headerBytes.length;
+			}
+
+			@Override
+			public int getHeaderOffset() {
+				return 0;
+			}
+
+			@Override
+			public byte[] getPayloadBytes() {
+				return payloadBytes;
+			}
+
+			@Override
+			public int getPayloadLength() {
+				return payloadBytes.length;
+			}
+
+			@Override
+			public int getPayloadOffset() {
+				return 0;
+			}
+		};
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_mqtt_service_adapter;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.github.legion2.messaging_adapter.MessageConsumer;
+
+/**
+ * Tests for the {@link TopicTrie}
+ * 
+ * @author Leon Kiefer
+ */
+class TopicTrieTest {
+	private TopicTrie trie;
+	private MessageConsumer consumer1;
+	private MessageConsumer consumer2;
+
+	@BeforeEach
+	void setup() {
+		this.trie = new TopicTrie();
+		this.consumer1 = (message, topic) -> {
+		};
+		this.consumer2 = (message, topic) -> {
+		};
+	}
+
+	@Test
+	void testExactMatch() {
+		this.trie.add("a/b", this.consumer1);
+
+		assertThat(this.trie.match("a/b"), contains(this.consumer1));
+		assertThat(this.trie.match("a"), empty());
+		assertThat(this.trie.match("a/b/c"), empty());
+		assertThat(this.trie.match("a/c"), empty());
+	}
+
+	@Test
+	void testSingleLevelWildcard() {
+		this.trie.add("a/+/c", this.consumer1);
+
+		assertThat(this.trie.match("a/b/c"), contains(this.consumer1));
+		assertThat(this.trie.match("a//c"), contains(this.consumer1));
+		assertThat(this.trie.match("a/c"), empty());
+		assertThat(this.trie.match("a/b/d/c"), empty());
+	}
+
+	@Test
+	void testMultiLevelWildcard() {
+		this.trie.add("a/#", this.consumer1);
+
+		assertThat(this.trie.match("a"), contains(this.consumer1));
+		assertThat(this.trie.match("a/b"), contains(this.consumer1));
+		assertThat(this.trie.match("a/b/c"), contains(this.consumer1));
+		assertThat(this.trie.match("b/a"), empty());
+	}
+
+	@Test
+	void testDollarTopics() {
+		this.trie.add("#", this.consumer1);
+		this.trie.add("+/info", this.consumer1);
+		this.trie.add("$SYS/#", this.consumer2);
+
+		assertThat(this.trie.match("$SYS/info"), contains(this.consumer2));
+		assertThat(this.trie.match("a/info"), contains(this.consumer1));
+	}
+
+	@Test
+	void testDeduplication() {
+		this.trie.add("a/b", this.consumer1);
+		this.trie.add("a/+", this.consumer1);
+		this.trie.add("#", this.consumer1);
+		this.trie.add("a/#", this.consumer2);
+
+		assertThat(this.trie.match("a/b"), containsInAnyOrder(this.consumer1, this.consumer2));
+	}
+
+	@Test
+	void testAddAndRemove() {
+		assertThat(this.trie.add("a/b", this.consumer1), is(true));
+		assertThat(this.trie.add("a/b", this.consumer2), is(false));
+		assertThat(this.trie.topicFilters(), contains("a/b"));
+
+		assertThat(this.trie.remove("a/b", this.consumer1), is(false));
+		assertThat(this.trie.remove("a/b", this.consumer2), is(true));
+		assertThat(this.trie.topicFilters(), empty());
+		assertThat(this.trie.match("a/b"), empty());
+
+		assertThrows(IllegalArgumentException.class, () -> this.trie.remove("a/b", this.consumer1));
+	}
+
+	@Test
+	void testRemoveAll() {
+		this.trie.add("a/+", this.consumer1);
+		this.trie.add("a/+", this.consumer2);
+		this.trie.add("a/b", this.consumer2);
+
+		assertThat(this.trie.removeAll("a/+"), contains(this.consumer1, this.consumer2));
+		assertThat(this.trie.match("a/b"), contains(this.consumer2));
+		assertThat(this.trie.topicFilters(), contains("a/b"));
+		assertThat(this.trie.removeAll("a/+"), empty());
+	}
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.calculator;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The asynchronous variant of the {@link Calculator} interface. The returned futures complete when the result is
+ * available, so callers can issue multiple calculations without waiting for each of them.
+ * 
+ * @author Leon Kiefer
+ */
+public interface AsyncCalculator {
+	CompletableFuture<Float> add(float a, float b);
+
+	CompletableFuture<Float> sub(float a, float b);
+
+	CompletableFuture<Float> mul(float a, float b);
+
+	CompletableFuture<Float> div(float a, float b);
+}
@@ -16,17 +16,24 @@
 
 package io.github.legion2.calculator;
 
+import io.github.amyassist.amy.core.di.annotation.Memoize;
+
 /**
- * The Calculator interface with simple calculator functions.
+ * The Calculator interface with simple calculator functions. The functions are pure, so their results are cached by
+ * the dependency injection.
  * 
  * @author Leon Kiefer
  */
 public interface Calculator {
+	@Memoize
 	float add(float a, float b);
 
+	@Memoize
 	float sub(float a, float b);
 
+	@Memoize
 	float mul(float a, float b);
 
+	@Memoize
 	float div(float a, float b);
 }
@@ -41,6 +41,59 @@ export const swaggerJson = {
         }
       }
     },
+    '/api/calculate/batch': {
+      post: {
+        summary: 'Get the results of multiple expressions',
+        consumes: ['application/json'],
+        produces: ['application/json'],
+        parameters: [
+          {
+            name: 'body',
+            in: 'body',
+            description: 'The expressions which should be used to calculate the results',
+            required: true,
+            schema: {
+              type: 'object',
+              properties: {
+                expressions: {
+                  type: 'array',
+                  items: {
+                    type: 'string'
+                  }
+                }
+              }
+            }
+          }
+        ],
+        responses: {
+          '200': {
+            description: 'The results in the order of the expressions, failed calculations contain an error',
+            schema: {
+              type: 'object',
+              properties: {
+                results: {
+                  type: 'array',
+                  items: {
+                    type: 'object',
+                    properties: {
+                      result: {
+                        type: 'string'
+                      },
+                      error: {
+                        type: 'string'
+                      }
+                    }
+                  }
+                },
+                instance: {
+                  type: 'string'
+                }
+              }
+            }
+          }
+        }
+      }
+    },
     '/api/history': {
       get: {
         summary: 'Show a history of the last calculations',
@@ -20,6 +20,26 @@ app.get('/api/calculate', async (req: express.Request, resp: express.Response) =
   resp.send({ result, instance });
 });
 
+app.post('/api/calculate/batch', express.json(), async (req: express.Request, resp: express.Response) => {
+  const expressions: string[] = req.body.expressions;
+  if (!Array.isArray(expressions)) {
+    resp.status(400).send({ error: 'expressions must be an array' });
+    return;
+  }
+  const results = await Promise.all(
+    expressions.map(async expression => {
+      try {
+        const result = await calculator(expression);
+        addToHistory({ expression, result });
+        return { result };
+      } catch (error) {
+        return { error: error.message };
+      }
+    })
+  );
+  resp.send({ results, instance });
+});
+
 app.get('/api/history', async (req: express.Request, resp: express.Response) => {
   const records = await getHistory();
   resp.send({ records, instance });
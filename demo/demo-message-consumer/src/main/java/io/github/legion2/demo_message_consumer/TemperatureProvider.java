@@ -16,19 +16,23 @@
 
 package io.github.legion2.demo_message_consumer;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+import io.github.amyassist.amy.core.di.TaskScheduler;
 import io.github.amyassist.amy.core.di.annotation.Reference;
+import io.github.legion2.messaging_adapter.Message;
 import io.github.legion2.messaging_adapter.MessagingAdapter;
 import io.github.legion2.service_injection_bootstrap.InitComponent;
 import io.github.legion2.service_injection_bootstrap.annotations.Init;
 
 /**
  * Provider for fake temperature data published to a topic of the
- * MessagingAdapter.
+ * MessagingAdapter. The number of simulated sensors is given by the
+ * {@code temperature.sensors} system property, the readings of all sensors are
+ * published as one batch.
  * 
  * @author Leon Kiefer
  */
@@ -36,23 +40,58 @@ import io.github.legion2.service_injection_bootstrap.annotations.Init;
 public class TemperatureProvider implements InitComponent {
 	private static final String TOPIC = "temperature";
 
-	private double temp = 15;
+	private final String[] topics;
+	private final double[] temps;
 
 	private Random random = new Random();
 
 	@Reference
 	private MessagingAdapter messagingAdapter;
 
+	@Reference
+	private TaskScheduler taskScheduler;
+
+	public TemperatureProvider() {
+		int sensors = Integer.getInteger("temperature.sensors", 1);
+		this.topics = new String[sensors];
+		this.temps = new double[sensors];
+		for (int i = 0; i < sensors; i++) {
+			this.topics[i] = TOPIC + (i == 0 ? "/outdoor" : "/sensor" + i);
+			this.temps[i] = 15;
+		}
+	}
+
 	@Override
 	public void init() {
-		ScheduledExecutorService newScheduledThreadPool = Executors.newScheduledThreadPool(1);
-		newScheduledThreadPool.scheduleAtFixedRate(this::publishData, 500, 700, TimeUnit.MILLISECONDS);
+		this.taskScheduler.scheduleAtFixedRate(this::publishData, 500, 700, TimeUnit.MILLISECONDS);
 	}
 
 	private void publishData() {
-		double nextGaussian = this.random.nextGaussian();
-		temp += nextGaussian * 0.1;
-		messagingAdapter.publish(TOPIC + "/outdoor", String.format("%1$,.2f °C", temp), 2, false);
+		List<Message> messages = new ArrayList<>(this.topics.length);
+		for (int i = 0; i < this.topics.length; i++) {
+			this.temps[i] += this.random.nextGaussian() * 0.1;
+			messages.add(new Message(this.topics[i], format(this.temps[i]), 2, false));
+		}
+		this.messagingAdapter.publishAll(messages);
+	}
+
+	/**
+	 * Format the temperature with two decimal places, without the overhead of
+	 * String.format.
+	 */
+	private static String format(double temp) {
+		long hundredths = Math.round(temp * 100);
+		StringBuilder builder = new StringBuilder(12);
+		if (hundredths < 0) {
+			builder.append('-');
+			hundredths = -hundredths;
+		}
+		builder.append(hundredths / 100).append('.');
+		long fraction = hundredths % 100;
+		if (fraction < 10) {
+			builder.append('0');
+		}
+		return builder.append(fraction).append(" °C").toString();
 	}
 
 }
@@ -16,7 +16,10 @@
 
 package io.github.legion2.servlet_demo;
 
+import java.util.function.Supplier;
+
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.enterprise.context.ApplicationScoped;
 
 import io.github.amyassist.amy.core.di.DependencyInjection;
@@ -39,11 +42,21 @@ public class DependencyInjectionWrapper implements ServiceLocator {
 		this.serviceLocator = this.di.getServiceLocator();
     }
 
+	@PreDestroy
+	private void destroy() {
+		this.di.shutdown();
+	}
+
 	@Override
 	public <T> T createAndInitialize(Class<T> serviceClass) {
 		return this.serviceLocator.createAndInitialize(serviceClass);
 	}
 
+	@Override
+	public <T> Supplier<T> factoryFor(Class<T> serviceClass) {
+		return this.serviceLocator.factoryFor(serviceClass);
+	}
+
 	@Override
 	public <T> T getService(Class<T> serviceType) {
 		return this.serviceLocator.getService(serviceType);
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Consumer which reports when a message is processed, so the adapter can
+ * acknowledge the message at the broker afterwards instead of when it was
+ * passed to the consumer.
+ * 
+ * @author Leon Kiefer
+ * @see DeliveryStage
+ */
+public interface AcknowledgingConsumer extends MessageConsumer {
+	/**
+	 * Consume the raw payload of a message and run the acknowledgement when
+	 * the message is processed, also if the consumer failed or the message is
+	 * discarded later. Otherwise the client would stop receiving messages,
+	 * because they are acknowledged in order. The acknowledgement is not run
+	 * if this method throws an exception.
+	 * 
+	 * @param payload         The payload of the message, owned by the consumer
+	 * @param topic           The topic the message was published to
+	 * @param acknowledgement Called once when the message is processed
+	 * @see MessageConsumer#consume(ByteBuffer, String)
+	 */
+	void consume(ByteBuffer payload, String topic, Runnable acknowledgement);
+
+	@Override
+	default void consume(ByteBuffer payload, String topic) {
+		this.consume(payload, topic, () -> {
+		});
+	}
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Consumer of binary messages. The payload is passed as received from the
+ * broker without decoding or copying it, see
+ * {@link MessageConsumer#consume(ByteBuffer, String)} for the ownership of
+ * the payload.
+ * 
+ * @author Leon Kiefer
+ */
+@FunctionalInterface
+public interface BinaryMessageConsumer extends MessageConsumer {
+	@Override
+	void consume(ByteBuffer payload, String topic);
+
+	@Override
+	default void consumer(String message, String topic) {
+		this.consume(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), topic);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Helper for MessagingAdapter implementations to share one connection per
+ * broker between multiple adapter instances. The connections are reference
+ * counted and closed when the last adapter releases its connection.
+ * 
+ * @author Leon Kiefer
+ * @param <C> the type of the connections
+ */
+public class ConnectionRegistry<C> {
+	private final Consumer<C> closer;
+	private final Map<String, C> connections = new HashMap<>();
+	private final Map<C, String> keys = new IdentityHashMap<>();
+	private final Map<C, Integer> references = new IdentityHashMap<>();
+
+	/**
+	 * @param closer closes a connection which is no longer used
+	 */
+	public ConnectionRegistry(Consumer<C> closer) {
+		this.closer = closer;
+	}
+
+	/**
+	 * Get the connection for the key or create it, if there is no connection
+	 * for the key. Each acquired connection must be released with
+	 * {@link #release(Object)}. Other connections can't be acquired while a
+	 * connection is created.
+	 * 
+	 * @param key     the key of the connection, e.g. the address of the broker
+	 * @param factory creates a new connection
+	 * @return the shared connection
+	 */
+	public synchronized C acquire(String key, Supplier<C> factory) {
+		C connection = this.connections.get(key);
+		if (connection == null) {
+			connection = factory.get();
+			this.connections.put(key, connection);
+			this.keys.put(connection, key);
+		}
+		this.references.merge(connection, 1, Integer::sum);
+		return connection;
+	}
+
+	/**
+	 * Release an acquired connection. The connection is closed if it is not used
+	 * anymore.
+	 * 
+	 * @param connection the acquired connection
+	 * @throws IllegalArgumentException if the connection was not acquired
+	 */
+	public void release(C connection) {
+		synchronized (this) {
+			Integer count = this.references.get(connection);
+			if (count == null) {
+				throw new IllegalArgumentException("The connection was not acquired");
+			}
+			if (count > 1) {
+				this.references.put(connection, count - 1);
+				return;
+			}
+			this.references.remove(connection);
+			this.connections.remove(this.keys.remove(connection));
+		}
+		this.closer.accept(connection);
+	}
+
+	/**
+	 * @param key the key of the connection
+	 * @return the number of adapters using the connection for the key
+	 */
+	public synchronized int getReferenceCount(String key) {
+		C connection = this.connections.get(key);
+		return connection == null ? 0 : this.references.get(connection);
+	}
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Optional stage of a MessagingAdapter which decouples the consumers from the
+ * thread of the messaging client. Each subscription has a bounded queue and
+ * its messages are delivered by the executor, one message per topic at a
+ * time, so messages of the same topic are consumed in order while different
+ * topics are consumed concurrently. The {@link OverflowPolicy} defines what
+ * happens if the queue of a subscription is full. The stage keeps the
+ * payload until it is delivered and then hands it over to the consumer, as
+ * defined by {@link MessageConsumer#consume(ByteBuffer, String)}. The
+ * consumers of the subscriptions are {@link AcknowledgingConsumer}s, so the
+ * adapter can acknowledge a message after it was delivered. If the consumer
+ * of a subscription is an {@link AcknowledgingConsumer} too, it acknowledges
+ * the delivered messages itself. Messages dropped by the
+ * {@link OverflowPolicy} are acknowledged too. If the stage is closed,
+ * new messages are rejected. Queued messages which can not be delivered
+ * anymore, because the executor rejects their delivery, are discarded and
+ * acknowledged, so they don't block the acknowledgements of later messages
+ * at the client. Each acknowledgement runs at most once.
+ * 
+ * @author Leon Kiefer
+ */
+public class DeliveryStage implements DeliveryStageMXBean {
+	private static final int MAX_MESSAGES_PER_TASK = 64;
+
+	private final Executor executor;
+	private final boolean ownsExecutor;
+	private final int capacity;
+	private final OverflowPolicy overflowPolicy;
+	private final BiConsumer<String, RuntimeException> errorHandler;
+
+	private final AtomicInteger queueDepth = new AtomicInteger();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong rejected = new AtomicLong();
+	private volatile boolean closed;
+	private ObjectName objectName;
+
+	/**
+	 * @param name           the name of the stage used for the metrics
+	 * @param executor       the executor which runs the consumers or null to
+	 *                       use a pool of threads owned by this stage
+	 * @param threads        the number of threads if no executor is given
+	 * @param capacity       the maximum number of queued messages per
+	 *                       subscription
+	 * @param overflowPolicy what to do if a queue is full
+	 * @param errorHandler   called with the topic and the exception if a
+	 *                       consumer fails
+	 */
+	public DeliveryStage(String name, Executor executor, int threads, int capacity, OverflowPolicy overflowPolicy,
+			BiConsumer<String, RuntimeException> errorHandler) {
+		if (executor == null) {
+			this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+				Thread thread = new Thread(runnable, name + "-delivery");
+				thread.setDaemon(true);
+				return thread;
+			});
+			this.ownsExecutor = true;
+		} else {
+			this.executor = executor;
+			this.ownsExecutor = false;
+		}
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy;
+		this.errorHandler = errorHandler;
+
+		try {
+			this.objectName = new ObjectName("io.github.legion2.messaging_adapter:type=DeliveryStage,name="
+					+ ObjectName.quote(name) + ",instance=" + System.identityHashCode(this));
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, this.objectName);
+		} catch (JMException e) {
+			this.objectName = null;
+		}
+	}
+
+	/**
+	 * Create the consumer for a subscription, which queues the messages and
+	 * delivers them to the given consumer using the executor.
+	 * 
+	 * @param consumer the consumer of the subscription
+	 * @return the consumer which must be called by the messaging client
+	 */
+	public AcknowledgingConsumer subscription(MessageConsumer consumer) {
+		return new Subscription(consumer);
+	}
+
+	/**
+	 * Unregister the metrics and shut down the threads owned by this stage.
+	 */
+	public void close() {
+		this.closed = true;
+		if (this.ownsExecutor) {
+			((ExecutorService) this.executor).shutdown();
+		}
+		if (this.objectName != null) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+			} catch (JMException e) {
+				// already unregistered
+			}
+		}
+	}
+
+	@Override
+	public int getQueueDepth() {
+		return this.queueDepth.get();
+	}
+
+	@Override
+	public long getDelivered() {
+		return this.delivered.get();
+	}
+
+	@Override
+	public long getDropped() {
+		return this.dropped.get();
+	}
+
+	@Override
+	public long getRejected() {
+		return this.rejected.get();
+	}
+
+	private class Subscription implements AcknowledgingConsumer {
+		private final MessageConsumer consumer;
+		/**
+		 * all queued messages of the subscription in arrival order
+		 */
+		private final Set<Message> pending = new LinkedHashSet<>();
+		/**
+		 * the queued messages of each topic, which has queued messages or a
+		 * running delivery task
+		 */
+		private final Map<String, Queue<Message>> topics = new HashMap<>();
+
+		Subscription(MessageConsumer consumer) {
+			this.consumer = consumer;
+		}
+
+		@Override
+		public void consumer(String message, String topic) {
+			this.consume(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), topic);
+		}
+
+		@Override
+		public void consume(ByteBuffer payload, String topic, Runnable acknowledgement) {
+			if (DeliveryStage.this.closed) {
+				DeliveryStage.this.rejected.incrementAndGet();
+				throw new RejectedExecutionException("The delivery stage is closed");
+			}
+			Message message = new Message(payload, topic, acknowledgement);
+			List<Message> droppedMessages = new ArrayList<>();
+			boolean schedule;
+			synchronized (this) {
+				while (this.pending.size() >= DeliveryStage.this.capacity) {
+					switch (DeliveryStage.this.overflowPolicy) {
+					case BLOCK:
+						try {
+							this.wait();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							throw new RejectedExecutionException("Interrupted while waiting for space in the queue",
+									e);
+						}
+						break;
+					case DROP_OLDEST:
+						Iterator<Message> iterator = this.pending.iterator();
+						Message oldest = iterator.next();
+						iterator.remove();
+						this.topics.get(oldest.topic).remove(oldest);
+						DeliveryStage.this.queueDepth.decrementAndGet();
+						DeliveryStage.this.dropped.incrementAndGet();
+						droppedMessages.add(oldest);
+						break;
+					case REJECT:
+					default:
+						DeliveryStage.this.rejected.incrementAndGet();
+						throw new RejectedExecutionException("The delivery queue of the subscription is full");
+					}
+				}
+				this.pending.add(message);
+				DeliveryStage.this.queueDepth.incrementAndGet();
+				Queue<Message> topicQueue = this.topics.get(topic);
+				schedule = topicQueue == null;
+				if (schedule) {
+					topicQueue = new ArrayDeque<>();
+					this.topics.put(topic, topicQueue);
+				}
+				topicQueue.add(message);
+			}
+			for (Message droppedMessage : droppedMessages) {
+				droppedMessage.acknowledge();
+			}
+			if (schedule) {
+				try {
+					DeliveryStage.this.executor.execute(() -> this.deliver(topic));
+				} catch (RejectedExecutionException e) {
+					// the other discarded messages were queued while scheduling
+					List<Message> discarded = this.discard(topic);
+					discarded.remove(message);
+					DeliveryStage.this.dropped.addAndGet(discarded.size());
+					DeliveryStage.this.rejected.incrementAndGet();
+					// the rejected message is not acknowledged, because the exception is thrown
+					discarded.forEach(Message::acknowledge);
+					throw e;
+				}
+			}
+		}
+
+		/**
+		 * Remove the queued messages of the topic, because no delivery task
+		 * can be scheduled for them. The caller acknowledges them outside of
+		 * the lock.
+		 * 
+		 * @return the removed messages
+		 */
+		private synchronized List<Message> discard(String topic) {
+			Queue<Message> topicQueue = this.topics.remove(topic);
+			if (topicQueue == null) {
+				return new ArrayList<>();
+			}
+			this.pending.removeAll(topicQueue);
+			DeliveryStage.this.queueDepth.addAndGet(-topicQueue.size());
+			this.notifyAll();
+			return new ArrayList<>(topicQueue);
+		}
+
+		private void deliver(String topic) {
+			for (int i = 0; i < MAX_MESSAGES_PER_TASK; i++) {
+				Message message;
+				synchronized (this) {
+					Queue<Message> topicQueue = this.topics.get(topic);
+					message = topicQueue.poll();
+					if (message == null) {
+						this.topics.remove(topic);
+						return;
+					}
+					this.pending.remove(message);
+					DeliveryStage.this.queueDepth.decrementAndGet();
+					this.notifyAll();
+				}
+				boolean acknowledging = false;
+				try {
+					if (this.consumer instanceof AcknowledgingConsumer) {
+						((AcknowledgingConsumer) this.consumer).consume(message.payload, topic, message::acknowledge);
+						acknowledging = true;
+					} else {
+						this.consumer.consume(message.payload, topic);
+					}
+				} catch (RuntimeException e) {
+					DeliveryStage.this.errorHandler.accept(topic, e);
+				}
+				DeliveryStage.this.delivered.incrementAndGet();
+				if (!acknowledging) {
+					// does nothing if the consumer acknowledged before it failed
+					message.acknowledge();
+				}
+			}
+			// give other topics a chance to run
+			try {
+				DeliveryStage.this.executor.execute(() -> this.deliver(topic));
+			} catch (RejectedExecutionException e) {
+				List<Message> discarded = this.discard(topic);
+				DeliveryStage.this.dropped.addAndGet(discarded.size());
+				discarded.forEach(Message::acknowledge);
+			}
+		}
+	}
+
+	private static class Message {
+		private final ByteBuffer payload;
+		private final String topic;
+		private final Runnable acknowledgement;
+		private final AtomicBoolean acknowledged = new AtomicBoolean();
+
+		Message(ByteBuffer payload, String topic, Runnable acknowledgement) {
+			this.payload = payload;
+			this.topic = topic;
+			this.acknowledgement = acknowledgement;
+		}
+
+		/**
+		 * Run the acknowledgement, if it did not run yet.
+		 */
+		void acknowledge() {
+			if (this.acknowledged.compareAndSet(false, true)) {
+				this.acknowledgement.run();
+			}
+		}
+	}
+}
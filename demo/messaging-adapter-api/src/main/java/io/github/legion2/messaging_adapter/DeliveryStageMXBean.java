@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+/**
+ * Metrics of a {@link DeliveryStage}.
+ * 
+ * @author Leon Kiefer
+ */
+public interface DeliveryStageMXBean {
+	/**
+	 * @return the number of queued messages of all subscriptions
+	 */
+	int getQueueDepth();
+
+	/**
+	 * @return the number of messages passed to the consumers
+	 */
+	long getDelivered();
+
+	/**
+	 * @return the number of messages dropped by {@link OverflowPolicy#DROP_OLDEST}
+	 *         or because the stage was closed
+	 */
+	long getDropped();
+
+	/**
+	 * @return the number of messages rejected by {@link OverflowPolicy#REJECT}
+	 *         or because the stage is closed
+	 */
+	long getRejected();
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+/**
+ * Interfaces for demand-based streams of messages. They have the same methods
+ * and contract as {@code java.util.concurrent.Flow} of Java 9, which is not
+ * available on Java 8.
+ * 
+ * @author Leon Kiefer
+ */
+public final class Flow {
+	private Flow() {
+		// hide constructor
+	}
+
+	/**
+	 * A producer of items which are received by subscribers according to their
+	 * demand.
+	 * 
+	 * @param <T> the type of the items
+	 */
+	@FunctionalInterface
+	public interface Publisher<T> {
+		/**
+		 * Add the subscriber. The publisher calls
+		 * {@link Subscriber#onSubscribe(Subscription)} and then delivers items when
+		 * they are requested.
+		 * 
+		 * @param subscriber the subscriber
+		 */
+		void subscribe(Subscriber<? super T> subscriber);
+	}
+
+	/**
+	 * A receiver of items. The methods are called sequentially for each
+	 * subscription.
+	 * 
+	 * @param <T> the type of the items
+	 */
+	public interface Subscriber<T> {
+		/**
+		 * Called before any other method with the new subscription.
+		 * 
+		 * @param subscription the subscription
+		 */
+		void onSubscribe(Subscription subscription);
+
+		/**
+		 * Called with the next item, only if it was requested.
+		 * 
+		 * @param item the item
+		 */
+		void onNext(T item);
+
+		/**
+		 * Called when the subscription failed, no other method is called
+		 * afterwards.
+		 * 
+		 * @param throwable the cause
+		 */
+		void onError(Throwable throwable);
+
+		/**
+		 * Called when there are no more items, no other method is called
+		 * afterwards.
+		 */
+		void onComplete();
+	}
+
+	/**
+	 * The link between a publisher and a subscriber.
+	 */
+	public interface Subscription {
+		/**
+		 * Add demand for the given number of items.
+		 * 
+		 * @param n the number of additional items, must be positive
+		 */
+		void request(long n);
+
+		/**
+		 * Stop receiving items. Items may still be received for a short time.
+		 */
+		void cancel();
+	}
+}
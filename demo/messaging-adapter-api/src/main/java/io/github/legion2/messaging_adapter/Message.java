@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A message to publish with
+ * {@link MessagingAdapter#publishAll(java.util.Collection)} or a message
+ * received from a {@link TopicPublisher}.
+ * 
+ * @author Leon Kiefer
+ */
+public final class Message {
+	private final String topic;
+	private final ByteBuffer payload;
+	private final int qualityOfService;
+	private final boolean retain;
+
+	/**
+	 * @param topic            The topic to publish to
+	 * @param payload          The payload to publish, from its position to its
+	 *                         limit. It must not be modified afterwards.
+	 * @param qualityOfService The quality of service level to publish with (0-2)
+	 * @param retain           Whether the message should be retained.
+	 */
+	public Message(String topic, ByteBuffer payload, int qualityOfService, boolean retain) {
+		this.topic = topic;
+		this.payload = payload;
+		this.qualityOfService = qualityOfService;
+		this.retain = retain;
+	}
+
+	/**
+	 * @param topic            The topic to publish to
+	 * @param message          The message to publish, encoded as UTF-8
+	 * @param qualityOfService The quality of service level to publish with (0-2)
+	 * @param retain           Whether the message should be retained.
+	 */
+	public Message(String topic, String message, int qualityOfService, boolean retain) {
+		this(topic, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), qualityOfService, retain);
+	}
+
+	/**
+	 * @return the topic to publish to
+	 */
+	public String getTopic() {
+		return this.topic;
+	}
+
+	/**
+	 * @return the payload of the message
+	 */
+	public ByteBuffer getPayload() {
+		return this.payload;
+	}
+
+	/**
+	 * @return the quality of service level to publish with
+	 */
+	public int getQualityOfService() {
+		return this.qualityOfService;
+	}
+
+	/**
+	 * @return whether the message should be retained
+	 */
+	public boolean isRetain() {
+		return this.retain;
+	}
+}
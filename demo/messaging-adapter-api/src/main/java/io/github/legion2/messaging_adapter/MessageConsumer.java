@@ -16,11 +16,34 @@
 
 package io.github.legion2.messaging_adapter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
 /**
+ * Consumer of the messages of a subscription. String messages are decoded from
+ * UTF-8.
  * 
  * @author Leon Kiefer
+ * @see BinaryMessageConsumer
  */
 @FunctionalInterface
 public interface MessageConsumer {
 	void consumer(String message, String topic);
+
+	/**
+	 * Consume the raw payload of a message. This is called by the
+	 * MessagingAdapter and decodes the payload as UTF-8 string by default.
+	 * 
+	 * The ownership of the buffer is transferred to the consumer, so it may
+	 * keep the buffer after this call and change its position. The adapter
+	 * never reuses the buffer or its content. The content must not be
+	 * modified, because it may be shared with the other consumers of the
+	 * message.
+	 * 
+	 * @param payload The payload of the message, owned by the consumer
+	 * @param topic   The topic the message was published to
+	 */
+	default void consume(ByteBuffer payload, String topic) {
+		this.consumer(StandardCharsets.UTF_8.decode(payload).toString(), topic);
+	}
 }
@@ -16,6 +16,10 @@
 
 package io.github.legion2.messaging_adapter;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+
 /**
  * Simple MessagingAdapter for PubSub messaging. It provide subscribe,
  * unsubscribe and publish functionality.
@@ -24,7 +28,7 @@ package io.github.legion2.messaging_adapter;
  */
 public interface MessagingAdapter {
 	/**
-	 * Publishes a message on the given topic.
+	 * Publishes a message on the given topic. The message is encoded as UTF-8.
 	 * 
 	 * @param topic            The topic to publish to
 	 * @param message          The message to publish
@@ -33,7 +37,53 @@ public interface MessagingAdapter {
 	 * 
 	 * @throws IllegalStateException When an error occurs while publishing.
 	 */
-	void publish(String topic, String message, int qualityOfService, boolean retain);
+	default void publish(String topic, String message, int qualityOfService, boolean retain) {
+		this.publish(topic, ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), qualityOfService, retain);
+	}
+
+	/**
+	 * Publishes a binary message on the given topic. The payload is passed to
+	 * the client without copying if possible, so it must not be modified
+	 * afterwards.
+	 * 
+	 * @param topic            The topic to publish to
+	 * @param payload          The payload to publish, from its position to its
+	 *                         limit
+	 * @param qualityOfService The quality of service level to publish with (0-2)
+	 * @param retain           Whether the message should be retained.
+	 * 
+	 * @throws IllegalStateException When an error occurs while publishing.
+	 */
+	void publish(String topic, ByteBuffer payload, int qualityOfService, boolean retain);
+
+	/**
+	 * Publishes all given messages. Implementations hand the whole batch to the
+	 * client at once, so the messages are pipelined instead of being published
+	 * one after another. Messages of the same topic are published in the order
+	 * of the collection, messages of different topics may be reordered.
+	 * 
+	 * @param messages The messages to publish
+	 * 
+	 * @throws IllegalStateException When an error occurs while publishing. If
+	 *                               some of the messages were already handed
+	 *                               over to the client, a
+	 *                               {@link PartialPublishException} is thrown.
+	 */
+	default void publishAll(Collection<Message> messages) {
+		int published = 0;
+		for (Message message : messages) {
+			try {
+				this.publish(message.getTopic(), message.getPayload(), message.getQualityOfService(),
+						message.isRetain());
+			} catch (IllegalStateException e) {
+				if (published == 0) {
+					throw e;
+				}
+				throw new PartialPublishException(published, e);
+			}
+			published++;
+		}
+	}
 
 	/**
 	 * Subscribe to a topic
@@ -55,4 +105,20 @@ public interface MessagingAdapter {
 	 * @throws IllegalArgumentException When the given consumer was not subscribed.
 	 */
 	void unsubscribe(String topic, MessageConsumer consumer);
+
+	/**
+	 * Get a publisher of the messages of a topic. Each subscriber of the
+	 * publisher subscribes to the topic and receives the messages according to
+	 * its demand. The messages are acknowledged when they are passed to the
+	 * subscriber.
+	 * 
+	 * @param topic      The topic to subscribe to
+	 * @param bufferSize The maximum number of received but not requested messages
+	 *                   of each subscriber
+	 * @return the publisher of the messages published to the given topic
+	 * @see TopicPublisher
+	 */
+	default Flow.Publisher<Message> publisher(String topic, int bufferSize) {
+		return new TopicPublisher(this, topic, bufferSize);
+	}
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+/**
+ * What a {@link DeliveryStage} does with a message if the queue of the
+ * subscription is full.
+ * 
+ * @author Leon Kiefer
+ */
+public enum OverflowPolicy {
+	/**
+	 * Block the thread of the messaging client until there is space in the
+	 * queue. This propagates the back-pressure to the broker.
+	 */
+	BLOCK,
+	/**
+	 * Drop the oldest queued message of the subscription.
+	 */
+	DROP_OLDEST,
+	/**
+	 * Reject the new message with a
+	 * {@link java.util.concurrent.RejectedExecutionException}, so the adapter
+	 * can return it to the broker.
+	 */
+	REJECT
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.util.Collection;
+
+/**
+ * Thrown by {@link MessagingAdapter#publishAll(Collection)} if the publishing
+ * failed after some of the messages were handed over to the client. The
+ * messages are handed over in order, so the first {@link #getPublished()}
+ * messages are published and the remaining messages can be published again.
+ * 
+ * @author Leon Kiefer
+ */
+public class PartialPublishException extends IllegalStateException {
+	private static final long serialVersionUID = 1L;
+
+	private final int published;
+
+	/**
+	 * @param published the number of messages which were handed over to the
+	 *                  client
+	 * @param cause     the reason why the remaining messages were not published
+	 */
+	public PartialPublishException(int published, Throwable cause) {
+		super("Only the first " + published + " messages were published", cause);
+		this.published = published;
+	}
+
+	/**
+	 * @return the number of messages which were handed over to the client
+	 */
+	public int getPublished() {
+		return this.published;
+	}
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Helper for MessagingAdapter implementations whose clients require byte
+ * arrays.
+ * 
+ * @author Leon Kiefer
+ */
+public class Payloads {
+	private Payloads() {
+		// hide constructor
+	}
+
+	/**
+	 * Get the remaining bytes of the buffer as array. If the buffer wraps a
+	 * whole array, this array is returned without copying it.
+	 * 
+	 * @param payload the payload
+	 * @return the bytes of the payload
+	 */
+	public static byte[] toArray(ByteBuffer payload) {
+		if (payload.hasArray() && payload.arrayOffset() == 0 && payload.position() == 0
+				&& payload.remaining() == payload.array().length) {
+			return payload.array();
+		}
+		byte[] bytes = new byte[payload.remaining()];
+		payload.duplicate().get(bytes);
+		return bytes;
+	}
+}
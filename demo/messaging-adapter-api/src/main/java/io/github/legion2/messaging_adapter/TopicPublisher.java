@@ -0,0 +1,230 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Publisher of the messages of a topic subscription. Each subscriber gets its
+ * own subscription at the MessagingAdapter and a buffer of received messages,
+ * which are delivered only when requested.
+ * 
+ * The subscription is an {@link AcknowledgingConsumer}, so a message is only
+ * acknowledged at the broker after it was passed to the subscriber. The broker
+ * stops sending when its window of unacknowledged messages is full, e.g. the
+ * prefetch of AMQP or the in-flight messages of MQTT, without blocking the
+ * thread of the adapter. If the buffer overflows anyway, because the adapter
+ * does not limit the unacknowledged messages, the subscriber fails with an
+ * {@link IllegalStateException}. The buffered messages of a cancelled or
+ * failed subscriber are acknowledged, because they are not needed anymore.
+ * 
+ * The received messages have quality of service 0 and are not retained.
+ * 
+ * @author Leon Kiefer
+ */
+public class TopicPublisher implements Flow.Publisher<Message> {
+	private final MessagingAdapter messagingAdapter;
+	private final String topic;
+	private final int bufferSize;
+
+	/**
+	 * @param messagingAdapter the adapter to subscribe to
+	 * @param topic            the topic filter to subscribe to
+	 * @param bufferSize       the maximum number of received but not requested
+	 *                         messages of each subscriber
+	 */
+	public TopicPublisher(MessagingAdapter messagingAdapter, String topic, int bufferSize) {
+		if (bufferSize <= 0) {
+			throw new IllegalArgumentException("The buffer size must be positive");
+		}
+		this.messagingAdapter = messagingAdapter;
+		this.topic = topic;
+		this.bufferSize = bufferSize;
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super Message> subscriber) {
+		TopicSubscription subscription = new TopicSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+		if (subscription.isCancelled()) {
+			return;
+		}
+		try {
+			this.messagingAdapter.subscribe(this.topic, subscription);
+		} catch (IllegalStateException e) {
+			subscription.fail(e);
+		}
+	}
+
+	private class TopicSubscription implements Flow.Subscription, AcknowledgingConsumer {
+		private final Flow.Subscriber<? super Message> subscriber;
+		private final Queue<BufferedMessage> buffer = new ArrayDeque<>();
+		private long demand;
+		private boolean draining;
+		private boolean cancelled;
+		/**
+		 * the error to signal to the subscriber by the next drain
+		 */
+		private Throwable error;
+
+		TopicSubscription(Flow.Subscriber<? super Message> subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		@Override
+		public void consumer(String message, String topic) {
+			this.consume(ByteBuffer.wrap(message.getBytes(StandardCharsets.UTF_8)), topic);
+		}
+
+		@Override
+		public void consume(ByteBuffer payload, String topic, Runnable acknowledgement) {
+			boolean buffered = false;
+			synchronized (this) {
+				if (!this.cancelled) {
+					if (this.buffer.size() < TopicPublisher.this.bufferSize) {
+						this.buffer.add(new BufferedMessage(new Message(topic, payload, 0, false), acknowledgement));
+						buffered = true;
+					} else if (this.error == null) {
+						this.error = new IllegalStateException("The buffer of the subscriber is full");
+					}
+				}
+			}
+			if (!buffered) {
+				acknowledgement.run();
+			}
+			this.drain();
+		}
+
+		@Override
+		public void request(long n) {
+			synchronized (this) {
+				if (n <= 0) {
+					if (this.error == null) {
+						this.error = new IllegalArgumentException("The number of requested messages must be positive");
+					}
+				} else {
+					this.demand = this.demand + n < 0 ? Long.MAX_VALUE : this.demand + n;
+				}
+			}
+			this.drain();
+		}
+
+		/**
+		 * Deliver the requested messages and errors. Only one thread delivers at a
+		 * time, other threads only add messages, demand or errors, so the signals to
+		 * the subscriber are never concurrent.
+		 */
+		private void drain() {
+			synchronized (this) {
+				if (this.draining) {
+					return;
+				}
+				this.draining = true;
+			}
+			while (true) {
+				BufferedMessage message;
+				Throwable failure = null;
+				synchronized (this) {
+					if (this.cancelled) {
+						this.draining = false;
+						return;
+					}
+					if (this.error != null) {
+						failure = this.error;
+						this.draining = false;
+						message = null;
+					} else if (this.demand == 0 || this.buffer.isEmpty()) {
+						this.draining = false;
+						return;
+					} else {
+						message = this.buffer.poll();
+						this.demand--;
+					}
+				}
+				if (failure != null) {
+					this.fail(failure);
+					return;
+				}
+				try {
+					this.subscriber.onNext(message.message);
+				} catch (RuntimeException e) {
+					synchronized (this) {
+						this.draining = false;
+					}
+					this.fail(e);
+					return;
+				} finally {
+					message.acknowledgement.run();
+				}
+			}
+		}
+
+		@Override
+		public void cancel() {
+			this.cancelOnce();
+		}
+
+		private synchronized boolean isCancelled() {
+			return this.cancelled;
+		}
+
+		/**
+		 * @return true if the subscription was cancelled by this call
+		 */
+		private boolean cancelOnce() {
+			List<BufferedMessage> discarded;
+			synchronized (this) {
+				if (this.cancelled) {
+					return false;
+				}
+				this.cancelled = true;
+				discarded = new ArrayList<>(this.buffer);
+				this.buffer.clear();
+			}
+			for (BufferedMessage message : discarded) {
+				message.acknowledgement.run();
+			}
+			try {
+				TopicPublisher.this.messagingAdapter.unsubscribe(TopicPublisher.this.topic, this);
+			} catch (IllegalArgumentException e) {
+				// the subscription at the adapter failed
+			}
+			return true;
+		}
+
+		private void fail(Throwable throwable) {
+			if (this.cancelOnce()) {
+				this.subscriber.onError(throwable);
+			}
+		}
+	}
+
+	private static class BufferedMessage {
+		private final Message message;
+		private final Runnable acknowledgement;
+
+		BufferedMessage(Message message, Runnable acknowledgement) {
+			this.message = message;
+			this.acknowledgement = acknowledgement;
+		}
+	}
+}
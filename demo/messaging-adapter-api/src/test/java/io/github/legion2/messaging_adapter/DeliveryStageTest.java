@@ -0,0 +1,125 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.messaging_adapter;
+
+import static org.hamcrest.MatcherAssert.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the {@link DeliveryStage}
+ * 
+ * @author Leon Kiefer
+ */
+class DeliveryStageTest {
+	private final List<RuntimeException> errors = new ArrayList<>();
+	private DeliveryStage deliveryStage;
+
+	@AfterEach
+	void close() {
+		this.deliveryStage.close();
+	}
+
+	@Test
+	void testRejectingExecutorAcknowledgesDiscardedMessages() {
+		RejectingExecutor executor = new RejectingExecutor();
+		this.deliveryStage = new DeliveryStage("test", executor, 0, 1000, OverflowPolicy.REJECT,
+				(topic, e) -> this.errors.add(e));
+		AtomicInteger consumed = new AtomicInteger();
+		AcknowledgingConsumer subscription = this.deliveryStage
+				.subscription((BinaryMessageConsumer) (payload, topic) -> consumed.incrementAndGet());
+
+		int[] acknowledgements = new int[100];
+		for (int i = 0; i < acknowledgements.length; i++) {
+			int index = i;
+			subscription.consume(ByteBuffer.allocate(0), "a", () -> acknowledgements[index]++);
+		}
+		assertThat(executor.tasks, hasSize(1));
+
+		// the first task delivers a part of the messages and can not reschedule the delivery of the others
+		executor.rejecting = true;
+		executor.tasks.remove(0).run();
+
+		assertThat(consumed.get(), is(lessThan(acknowledgements.length)));
+		for (int acknowledgement : acknowledgements) {
+			assertThat(acknowledgement, is(1));
+		}
+		assertThat(this.deliveryStage.getDelivered(), is((long) consumed.get()));
+		assertThat(this.deliveryStage.getDropped(), is((long) acknowledgements.length - consumed.get()));
+		assertThat(this.deliveryStage.getQueueDepth(), is(0));
+
+		// a rejected message is not acknowledged, the client handles the exception
+		AtomicInteger rejectedAcknowledgements = new AtomicInteger();
+		assertThrows(RejectedExecutionException.class, () -> subscription.consume(ByteBuffer.allocate(0), "a",
+				rejectedAcknowledgements::incrementAndGet));
+		assertThat(rejectedAcknowledgements.get(), is(0));
+		assertThat(this.deliveryStage.getQueueDepth(), is(0));
+	}
+
+	@Test
+	void testAcknowledgementRunsOnce() {
+		this.deliveryStage = new DeliveryStage("test", Runnable::run, 0, 10, OverflowPolicy.REJECT,
+				(topic, e) -> this.errors.add(e));
+		AcknowledgingConsumer failingConsumer = new AcknowledgingConsumer() {
+			@Override
+			public void consumer(String message, String topic) {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void consume(ByteBuffer payload, String topic, Runnable acknowledgement) {
+				acknowledgement.run();
+				throw new IllegalStateException("failed after the acknowledgement");
+			}
+		};
+		AcknowledgingConsumer subscription = this.deliveryStage.subscription(failingConsumer);
+
+		AtomicInteger acknowledgements = new AtomicInteger();
+		subscription.consume(ByteBuffer.allocate(0), "a", acknowledgements::incrementAndGet);
+
+		assertThat(acknowledgements.get(), is(1));
+		assertThat(this.errors, hasSize(1));
+		assertThat(this.deliveryStage.getDelivered(), is(1L));
+	}
+
+	/**
+	 * Executor which collects the tasks and rejects them after it was switched
+	 * to rejecting.
+	 */
+	private static class RejectingExecutor implements Executor {
+		private final List<Runnable> tasks = new ArrayList<>();
+		private boolean rejecting;
+
+		@Override
+		public void execute(Runnable command) {
+			if (this.rejecting) {
+				throw new RejectedExecutionException("The executor is shut down");
+			}
+			this.tasks.add(command);
+		}
+	}
+}
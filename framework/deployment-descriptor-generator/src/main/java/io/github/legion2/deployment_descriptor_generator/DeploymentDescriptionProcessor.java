@@ -40,21 +40,25 @@ import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 
 import io.github.amyassist.amy.core.di.annotation.RequireDeploymentDescriptor;
+import io.github.amyassist.amy.core.di.annotation.Service;
 
 /**
  * Processes annotations that has the {@link RequireDeploymentDescriptor} meta annotation and generates the deployment
- * descriptor files described in {@link java.util.ServiceLoader}.
+ * descriptor files described in {@link java.util.ServiceLoader}. For the {@link Service} annotation additionally the
+ * {@link ServiceWiring} is checked. Service types provided at runtime by a ServiceProviderLoader are declared by
+ * putting the module of the loader on the annotation processor path, see {@link ServiceWiring#PROVIDED_RESOURCE}.
  * <p>
  * Processor Options:
  * <ul>
  * <li>debug - turns on debug statements</li>
+ * <li>strict - references to Services which are not provided by the module are errors instead of warnings</li>
  * </ul>
  * 
  * @author Leon Kiefer
  */
 @SupportedAnnotationTypes("*")
 @SupportedSourceVersion(SourceVersion.RELEASE_8)
-@SupportedOptions({ "debug" })
+@SupportedOptions({ "debug", "strict" })
 @AutoService(Processor.class)
 public class DeploymentDescriptionProcessor extends AbstractProcessor {
 
@@ -67,6 +71,14 @@ public class DeploymentDescriptionProcessor extends AbstractProcessor {
 	 */
 	private Multimap<String, String> providers = HashMultimap.create();
 
+	private ServiceWiring serviceWiring;
+
+	@Override
+	public synchronized void init(ProcessingEnvironment processingEnv) {
+		super.init(processingEnv);
+		this.serviceWiring = new ServiceWiring(processingEnv);
+	}
+
 	@Override
 	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
 		try {
@@ -82,6 +94,7 @@ public class DeploymentDescriptionProcessor extends AbstractProcessor {
 
 	private boolean processImpl(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
 		if (roundEnv.processingOver()) {
+			this.checkServiceWiring();
 			this.generateConfigFiles();
 		} else {
 			this.processAnnotations(annotations, roundEnv);
@@ -107,6 +120,9 @@ public class DeploymentDescriptionProcessor extends AbstractProcessor {
 			TypeElement providerImplementer = (TypeElement) e;
 			log("Class: " + providerImplementer.getQualifiedName());
 			this.providers.put(getBinaryName(annotation), getBinaryName(providerImplementer));
+			if (annotation.getQualifiedName().contentEquals(Service.class.getCanonicalName())) {
+				this.serviceWiring.add(providerImplementer);
+			}
 		}
 	}
 
@@ -157,6 +173,12 @@ public class DeploymentDescriptionProcessor extends AbstractProcessor {
 		}
 	}
 
+	private void checkServiceWiring() {
+		if (!this.serviceWiring.isEmpty()) {
+			this.serviceWiring.check(this.processingEnv.getOptions().containsKey("strict"));
+		}
+	}
+
 	/**
 	 * Returns the binary name of a reference type. For example, {@code com.google.Foo$Bar}, instead of
 	 * {@code com.google.Foo.Bar}.
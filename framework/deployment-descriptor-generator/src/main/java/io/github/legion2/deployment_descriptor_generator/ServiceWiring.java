@@ -0,0 +1,283 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.deployment_descriptor_generator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.*;
+
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.lang.model.element.*;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic.Kind;
+
+import io.github.amyassist.amy.core.di.annotation.Reference;
+import io.github.amyassist.amy.core.di.annotation.Service;
+
+/**
+ * The compile time check of the wiring of the {@link Service} classes of one module. It resolves the service type of
+ * each Service and the Services referenced with {@link Reference} and reports ambiguous, duplicate and not assignable
+ * service types and circular dependencies to the compiler. The check does not change how the Services are created at
+ * runtime, the dependency injection still resolves and checks the dependencies when the Services are created.
+ * <p>
+ * Service types which are not provided by the module itself must be declared in the resource
+ * {@value #PROVIDED_RESOURCE} on the annotation processor path, one service type per line. The dependency injection
+ * declares its own service types there, ServiceProviderLoaders declare the types they provide at runtime.
+ * 
+ * @author Leon Kiefer
+ */
+final class ServiceWiring {
+	/**
+	 * The resource which declares the service types provided by the dependency injection or a ServiceProviderLoader.
+	 */
+	static final String PROVIDED_RESOURCE = "META-INF/" + Service.class.getName() + ".provided";
+
+	private final Elements elements;
+	private final Types types;
+	private final Messager messager;
+	private final Map<String, TypeElement> services = new TreeMap<>();
+	private final Set<String> providedServices = new HashSet<>();
+
+	private final Map<String, String> serviceTypes = new HashMap<>();
+	private final Map<String, String> implementations = new HashMap<>();
+	private final Map<String, List<String>> dependencies = new HashMap<>();
+
+	/**
+	 * @param processingEnv
+	 *            the processing environment of the annotation processor
+	 */
+	ServiceWiring(ProcessingEnvironment processingEnv) {
+		this.elements = processingEnv.getElementUtils();
+		this.types = processingEnv.getTypeUtils();
+		this.messager = processingEnv.getMessager();
+		this.loadProvidedServices(this.getClass().getClassLoader());
+	}
+
+	private void loadProvidedServices(ClassLoader classLoader) {
+		try {
+			for (URL resource : Collections.list(classLoader.getResources(PROVIDED_RESOURCE))) {
+				try (InputStream inputStream = resource.openStream()) {
+					this.providedServices.addAll(ServicesFiles.readServiceFile(inputStream));
+				}
+			}
+		} catch (IOException e) {
+			this.messager.printMessage(Kind.WARNING, "Could not read the provided services: " + e);
+		}
+	}
+
+	/**
+	 * Add a class annotated with {@link Service} to the check.
+	 * 
+	 * @param service
+	 *            the implementation class of the Service
+	 */
+	void add(TypeElement service) {
+		this.services.put(this.elements.getBinaryName(service).toString(), service);
+	}
+
+	/**
+	 * @return true if no Services were added to the check
+	 */
+	boolean isEmpty() {
+		return this.services.isEmpty();
+	}
+
+	/**
+	 * Resolve the Services and report the errors in the wiring.
+	 * 
+	 * @param strict
+	 *            if references to Services, which are not provided by this module, should be reported as error
+	 *            instead of a warning
+	 */
+	void check(boolean strict) {
+		for (Map.Entry<String, TypeElement> service : this.services.entrySet()) {
+			this.resolveServiceType(service.getKey(), service.getValue());
+		}
+		for (Map.Entry<String, TypeElement> service : this.services.entrySet()) {
+			this.resolveDependencies(service.getKey(), service.getValue(), strict);
+		}
+
+		Map<String, Boolean> visited = new HashMap<>();
+		for (String implementation : this.services.keySet()) {
+			this.visit(implementation, visited, new ArrayDeque<>());
+		}
+	}
+
+	private void resolveServiceType(String implementation, TypeElement service) {
+		TypeMirror serviceType = this.getAnnotatedServiceType(service);
+		if (serviceType == null) {
+			List<? extends TypeMirror> interfaces = service.getInterfaces();
+			if (interfaces.size() == 1) {
+				serviceType = interfaces.get(0);
+			} else if (interfaces.isEmpty()) {
+				serviceType = service.asType();
+			} else {
+				this.error("The type of the service implementation " + implementation
+						+ " is ambiguous, because the type is not given by the annotation and multiple interfaces are implemented."
+						+ " Please specify which type this service should have.", service);
+				return;
+			}
+		}
+
+		if (!this.types.isAssignable(this.types.erasure(service.asType()), this.types.erasure(serviceType))) {
+			this.error("The specified service type " + serviceType + " is not assignable from " + implementation,
+					service);
+			return;
+		}
+
+		String serviceTypeName = this.getBinaryName(serviceType);
+		String duplicate = this.implementations.putIfAbsent(serviceTypeName, implementation);
+		if (duplicate != null) {
+			this.error("The service type " + serviceTypeName + " is already provided by " + duplicate, service);
+			return;
+		}
+		this.serviceTypes.put(implementation, serviceTypeName);
+	}
+
+	private TypeMirror getAnnotatedServiceType(TypeElement service) {
+		for (AnnotationMirror annotation : service.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (!annotationType.getQualifiedName().contentEquals(Service.class.getCanonicalName())) {
+				continue;
+			}
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> value : annotation
+					.getElementValues().entrySet()) {
+				if (value.getKey().getSimpleName().contentEquals("value")) {
+					TypeMirror type = (TypeMirror) value.getValue().getValue();
+					if (!this.getBinaryName(type).equals(Void.class.getName())) {
+						return type;
+					}
+				}
+			}
+		}
+		return null;
+	}
+
+	private void resolveDependencies(String implementation, TypeElement service, boolean strict) {
+		List<String> resolved = new ArrayList<>();
+		for (Map.Entry<Element, TypeMirror> reference : this.getReferences(service).entrySet()) {
+			String type = this.getBinaryName(reference.getValue());
+			if (this.providedServices.contains(type)) {
+				continue;
+			}
+			String dependency = this.implementations.get(type);
+			if (dependency != null) {
+				resolved.add(dependency);
+			} else {
+				String message = "No service of type " + type + " is provided by this module, it must be provided at runtime";
+				if (strict) {
+					this.error(message, reference.getKey());
+				} else {
+					this.messager.printMessage(Kind.WARNING, message, reference.getKey());
+				}
+			}
+		}
+		this.dependencies.put(implementation, resolved);
+	}
+
+	/**
+	 * Get the injection points of the service class and all its super classes.
+	 * 
+	 * @param service
+	 *            the implementation class of a Service
+	 * @return the annotated elements mapped to the type of the referenced Service
+	 */
+	private Map<Element, TypeMirror> getReferences(TypeElement service) {
+		Map<Element, TypeMirror> references = new LinkedHashMap<>();
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(service.getEnclosedElements())) {
+			if (constructor.getModifiers().contains(Modifier.PUBLIC)) {
+				for (VariableElement parameter : constructor.getParameters()) {
+					if (parameter.getAnnotation(Reference.class) != null) {
+						references.put(parameter, parameter.asType());
+					}
+				}
+			}
+		}
+
+		TypeElement type = service;
+		while (type != null) {
+			for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+				if (field.getAnnotation(Reference.class) != null) {
+					references.put(field, field.asType());
+				}
+			}
+			for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements())) {
+				if (method.getAnnotation(Reference.class) == null) {
+					continue;
+				}
+				if (method.getParameters().size() == 1) {
+					references.put(method, method.getParameters().get(0).asType());
+				} else {
+					this.error("The @Reference method " + method.getSimpleName() + " must have exactly one parameter",
+							method);
+				}
+			}
+			TypeMirror superclass = type.getSuperclass();
+			type = superclass.getKind() == TypeKind.DECLARED ? (TypeElement) this.types.asElement(superclass) : null;
+		}
+		return references;
+	}
+
+	/**
+	 * Depth first search which detects cycles. A Service is mapped to false while it is on the path and to true when
+	 * all of its dependencies are visited.
+	 */
+	private void visit(String implementation, Map<String, Boolean> visited, Deque<String> path) {
+		if (visited.containsKey(implementation)) {
+			if (!visited.get(implementation)) {
+				List<String> cycle = new ArrayList<>(path);
+				Collections.reverse(cycle);
+				cycle = cycle.subList(cycle.indexOf(implementation), cycle.size());
+				this.error("Circular dependencies: " + String.join(" -> ", cycle) + " -> " + implementation,
+						this.services.get(implementation));
+			}
+			return;
+		}
+		if (!this.serviceTypes.containsKey(implementation)) {
+			// the service type could not be resolved and the error is already reported
+			visited.put(implementation, true);
+			return;
+		}
+
+		visited.put(implementation, false);
+		path.push(implementation);
+		for (String dependency : this.dependencies.get(implementation)) {
+			this.visit(dependency, visited, path);
+		}
+		path.pop();
+		visited.put(implementation, true);
+	}
+
+	private String getBinaryName(TypeMirror type) {
+		TypeMirror erasure = this.types.erasure(type);
+		if (erasure.getKind() != TypeKind.DECLARED) {
+			return erasure.toString();
+		}
+		return this.elements.getBinaryName((TypeElement) ((DeclaredType) erasure).asElement()).toString();
+	}
+
+	private void error(String msg, Element element) {
+		this.messager.printMessage(Kind.ERROR, msg, element);
+	}
+}
@@ -45,6 +45,63 @@ public interface Configuration {
 	 */
 	void registerContextProvider(String key, StaticProvider<?> staticProvider);
 
+	/**
+	 * Replace the StaticContextProvider registered for the given key. The services which are already created with a
+	 * context of this key get their context from the new staticProvider. If the context of such a service changes, a
+	 * new instance of the service is created. Services which are looked up after this method returned get the new
+	 * instance. The services which got the old instance injected are recreated too, so they get the new instance
+	 * injected, and so on for their dependents. Objects which are not services, e.g. created with
+	 * {@link ServiceLocator#createAndInitialize(Class)}, keep the old instance. The old instances are disposed as soon
+	 * as no other service depends on them anymore, at the latest on shutdown. If no service can be provided with the
+	 * new context, the old instance is kept.
+	 * 
+	 * @param key
+	 *            the string key of the staticProvider which should be replaced
+	 * @param staticProvider
+	 *            the new StaticProvider for the key
+	 */
+	void rebindContextProvider(String key, StaticProvider<?> staticProvider);
+
+	/**
+	 * Register a StaticContextProvider in a namespace. It is used for services whose implementation class is loaded by
+	 * a ClassLoader of the namespace and takes precedence over a global StaticContextProvider with the same key. All
+	 * other services use it as global StaticContextProvider, if no global one is registered for the key and no other
+	 * namespace contains the key.
+	 * 
+	 * @param namespace
+	 *            the namespace of the staticProvider
+	 * @param key
+	 *            the string key which is used to later find that staticProvider
+	 * @param staticProvider
+	 *            the StaticProvider that should be registered
+	 * @see #registerContextNamespace(ClassLoader, String)
+	 */
+	void registerContextProvider(String namespace, String key, StaticProvider<?> staticProvider);
+
+	/**
+	 * Replace the StaticContextProvider registered for the given key in the namespace.
+	 * 
+	 * @param namespace
+	 *            the namespace of the staticProvider
+	 * @param key
+	 *            the string key of the staticProvider which should be replaced
+	 * @param staticProvider
+	 *            the new StaticProvider for the key
+	 * @see #rebindContextProvider(String, StaticProvider)
+	 */
+	void rebindContextProvider(String namespace, String key, StaticProvider<?> staticProvider);
+
+	/**
+	 * Assign a ClassLoader to a namespace of StaticContextProviders. Services loaded by this ClassLoader resolve their
+	 * context from the namespace first. The assignment does not keep the ClassLoader from being unloaded.
+	 * 
+	 * @param classLoader
+	 *            the ClassLoader which loads the services
+	 * @param namespace
+	 *            the namespace of the ClassLoader
+	 */
+	void registerContextNamespace(@Nonnull ClassLoader classLoader, String namespace);
+
 	/**
 	 * Registers a service implementation
 	 * 
@@ -63,4 +120,15 @@ public interface Configuration {
 	 */
 	<T> void register(@Nonnull ServiceProvider<T> serviceProvider);
 
+	/**
+	 * Get the TaskScheduler of a consumer class, for ServiceProviderLoaders which schedule tasks before any service is
+	 * created. The tasks are cancelled when the dependency injection is shut down.
+	 * 
+	 * @param consumerClass
+	 *            the class whose tasks are accounted by the TaskScheduler
+	 * @return the TaskScheduler of the consumer class
+	 */
+	@Nonnull
+	TaskScheduler getTaskScheduler(@Nonnull Class<?> consumerClass);
+
 }
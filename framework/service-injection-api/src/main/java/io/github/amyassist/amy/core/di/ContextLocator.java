@@ -36,13 +36,35 @@ import io.github.amyassist.amy.core.di.context.provider.StaticProvider;
  */
 public interface ContextLocator {
 	/**
-	 * Getter for the Context provider for the given identifier
+	 * Getter for the Context provider for the given identifier. If there is no global ContextProvider for the
+	 * identifier, the one of the only namespace which contains a ContextProvider for the identifier is returned.
 	 * 
 	 * @param contextProviderType
 	 *            the context identifier
 	 * @return the static ContextProvider
 	 * @throws NoSuchElementException
 	 *             if there is no ContextProvider for the given identifier
+	 * @throws IllegalStateException
+	 *             if there is no global ContextProvider and multiple namespaces contain one for the identifier
 	 */
 	StaticProvider<?> getContextProvider(@Nonnull String contextProviderType);
+
+	/**
+	 * Getter for the Context provider for the given identifier as seen from the given implementation class. If the
+	 * ClassLoader of the class belongs to a namespace which contains a ContextProvider for the identifier, this one is
+	 * returned, else the global one.
+	 * 
+	 * @param implementationClass
+	 *            the implementation class of the service which needs the context
+	 * @param contextProviderType
+	 *            the context identifier
+	 * @return the static ContextProvider
+	 * @throws NoSuchElementException
+	 *             if there is no ContextProvider for the given identifier
+	 * @throws IllegalStateException
+	 *             if the global ContextProvider is ambiguous
+	 * @see #getContextProvider(String)
+	 * @see Configuration#registerContextNamespace(ClassLoader, String)
+	 */
+	StaticProvider<?> getContextProvider(@Nonnull Class<?> implementationClass, @Nonnull String contextProviderType);
 }
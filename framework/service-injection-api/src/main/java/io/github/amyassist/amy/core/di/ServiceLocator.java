@@ -23,6 +23,8 @@
 
 package io.github.amyassist.amy.core.di;
 
+import java.util.function.Supplier;
+
 import javax.annotation.Nonnull;
 
 import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
@@ -47,6 +49,21 @@ public interface ServiceLocator {
 	 */
 	<T> T createAndInitialize(@Nonnull Class<T> serviceClass);
 
+	/**
+	 * Create a reusable factory for the given class. The class is checked and the constructor, the injection points and
+	 * the post construct methods are looked up once, so each call of the returned factory only resolves the
+	 * dependencies and creates, injects and post-constructs a new instance. The objects created in this way will not be
+	 * managed by the DI.
+	 *
+	 * @param serviceClass
+	 *            the implementation of a service
+	 * @return a factory which creates a new initialized instance of the given class on each call
+	 * @param <T>
+	 *            the type of the implementation class
+	 * @see #createAndInitialize(Class)
+	 */
+	<T> Supplier<T> factoryFor(@Nonnull Class<T> serviceClass);
+
 	/**
 	 * Get the service of the given type. This method lookup the service provider registered for the the given service
 	 * type and use it to return a object of the given type.
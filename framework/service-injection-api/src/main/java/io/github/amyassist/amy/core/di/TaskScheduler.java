@@ -0,0 +1,136 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nonnull;
+
+/**
+ * Service to schedule tasks on a thread pool managed by the dependency injection. All TaskSchedulers share one bounded
+ * pool, but each consumer class gets its own TaskScheduler which accounts the tasks of this consumer. The tasks of a
+ * consumer are cancelled when its TaskScheduler is disposed and the pool is shut down with the dependency injection.
+ * 
+ * @author Leon Kiefer
+ */
+public interface TaskScheduler {
+
+	/**
+	 * Schedule a one-shot task.
+	 * 
+	 * @param task
+	 *            the task to execute
+	 * @param delay
+	 *            the time from now to delay the execution
+	 * @param unit
+	 *            the time unit of the delay
+	 * @return the future representing the pending execution of the task
+	 * @throws RejectedExecutionException
+	 *             if this TaskScheduler was disposed or the pool was shut down
+	 * @see java.util.concurrent.ScheduledExecutorService#schedule(Runnable, long, TimeUnit)
+	 */
+	ScheduledFuture<?> schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit);
+
+	/**
+	 * Schedule a periodic task, which is executed first after the initial delay and then with the given period. If an
+	 * execution fails, subsequent executions are suppressed.
+	 * 
+	 * @param task
+	 *            the task to execute
+	 * @param initialDelay
+	 *            the time to delay the first execution
+	 * @param period
+	 *            the period between the start of successive executions
+	 * @param unit
+	 *            the time unit of the delay and period
+	 * @return the future representing the pending executions of the task
+	 * @throws RejectedExecutionException
+	 *             if this TaskScheduler was disposed or the pool was shut down
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleAtFixedRate(Runnable, long, long, TimeUnit)
+	 */
+	ScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable task, long initialDelay, long period,
+			@Nonnull TimeUnit unit);
+
+	/**
+	 * Schedule a periodic task, which is executed first after the initial delay and then with the given delay between
+	 * the end of one execution and the start of the next. If an execution fails, subsequent executions are suppressed.
+	 * 
+	 * @param task
+	 *            the task to execute
+	 * @param initialDelay
+	 *            the time to delay the first execution
+	 * @param delay
+	 *            the delay between the end of one execution and the start of the next
+	 * @param unit
+	 *            the time unit of the delays
+	 * @return the future representing the pending executions of the task
+	 * @throws RejectedExecutionException
+	 *             if this TaskScheduler was disposed or the pool was shut down
+	 * @see java.util.concurrent.ScheduledExecutorService#scheduleWithFixedDelay(Runnable, long, long, TimeUnit)
+	 */
+	ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable task, long initialDelay, long delay,
+			@Nonnull TimeUnit unit);
+
+	/**
+	 * @return the number of tasks of this consumer which are scheduled and not yet done or cancelled
+	 */
+	int getPendingTaskCount();
+
+	/**
+	 * @return the number of executions of the tasks of this consumer, including failed executions
+	 */
+	long getExecutionCount();
+
+	/**
+	 * @return the number of executions of the tasks of this consumer which threw an exception
+	 */
+	long getFailureCount();
+
+	/**
+	 * The skew is the time between the planned start of an execution and its actual start, which grows if the shared
+	 * pool is saturated.
+	 * 
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the average skew of all executions of the tasks of this consumer
+	 */
+	long getAverageSkew(@Nonnull TimeUnit unit);
+
+	/**
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the maximum skew of all executions of the tasks of this consumer
+	 * @see #getAverageSkew(TimeUnit)
+	 */
+	long getMaxSkew(@Nonnull TimeUnit unit);
+
+	/**
+	 * @param unit
+	 *            the time unit of the result
+	 * @return the average time an execution of the tasks of this consumer took
+	 */
+	long getAverageExecutionTime(@Nonnull TimeUnit unit);
+}
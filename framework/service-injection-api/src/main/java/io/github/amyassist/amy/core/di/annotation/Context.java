@@ -43,4 +43,12 @@ public @interface Context {
 	 * @return the string identifier
 	 */
 	String value();
+
+	/**
+	 * If the context is optional, null is injected when no context provider is registered for the identifier.
+	 * Otherwise the service can not be provided in this case.
+	 * 
+	 * @return true if the context is optional
+	 */
+	boolean optional() default false;
 }
@@ -0,0 +1,57 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Declare a method of a service type as a pure function of its arguments. The DI wraps services of an interface type
+ * with such methods, so the results of these methods are cached and the service implementation is only called for
+ * arguments which are not in the cache. Exceptions are not cached.
+ * 
+ * @author Leon Kiefer
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@Target(java.lang.annotation.ElementType.METHOD)
+public @interface Memoize {
+	/**
+	 * The maximum number of cached results of the method. If the cache is full, the least recently used result is
+	 * evicted.
+	 * 
+	 * @return the maximum size of the cache
+	 */
+	int maxSize() default 1024;
+
+	/**
+	 * The time in milliseconds a result is cached. If zero or negative, the results only expire by the size of the
+	 * cache.
+	 * 
+	 * @return the time to live of the cached results
+	 */
+	long ttl() default 0;
+}
@@ -29,7 +29,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Declare a init method
+ * Declare a init method. The method may return a {@link java.util.concurrent.CompletionStage} to initialize the
+ * service asynchronously, the service is ready when the stage completes.
  * 
  * @author Leon Kiefer
  */
@@ -29,7 +29,8 @@ import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
 /**
- * Declare a runtime dependency
+ * Declare a runtime dependency. Can be used on fields, on setter methods with exactly one parameter and on the
+ * parameters of the public constructor of a Service, so the dependencies can be assigned to final fields.
  * 
  * @see Service
  * 
@@ -37,7 +38,8 @@ import java.lang.annotation.Target;
  */
 @Retention(RetentionPolicy.RUNTIME)
 @Documented
-@Target(java.lang.annotation.ElementType.FIELD)
+@Target({ java.lang.annotation.ElementType.FIELD, java.lang.annotation.ElementType.METHOD,
+		java.lang.annotation.ElementType.PARAMETER })
 public @interface Reference {
 
 }
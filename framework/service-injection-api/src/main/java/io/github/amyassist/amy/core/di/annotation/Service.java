@@ -27,7 +27,8 @@ import java.lang.annotation.*;
 
 /**
  * Register a class as a Service. This annotation marks classes to be loaded in the DI. You can also specify the type of
- * the Service. Services MUST use {@link PostConstruct} instead of a constructor.
+ * the Service. Services MUST use {@link PostConstruct} instead of a constructor for initialization, the only allowed
+ * constructor parameters are dependencies annotated with {@link Reference}.
  * 
  * @see Reference
  * @see PostConstruct
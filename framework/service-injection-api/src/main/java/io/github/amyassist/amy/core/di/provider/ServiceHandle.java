@@ -23,6 +23,9 @@
 
 package io.github.amyassist.amy.core.di.provider;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import javax.annotation.Nonnull;
 
 /**
@@ -41,4 +44,15 @@ public interface ServiceHandle<T> {
 	 */
 	@Nonnull
 	T getService();
+
+	/**
+	 * Get the readiness of the service. The service instance can be used before it is ready, but it may not be
+	 * able to do its work until then, e.g. because it is still connecting to a remote system.
+	 * 
+	 * @return the stage which completes when the service is ready
+	 */
+	@Nonnull
+	default CompletionStage<Void> getReadiness() {
+		return CompletableFuture.completedFuture(null);
+	}
 }
@@ -23,6 +23,9 @@
 
 package io.github.amyassist.amy.core.di.provider;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 import javax.annotation.CheckForNull;
 import javax.annotation.Nonnull;
 
@@ -96,4 +99,21 @@ public interface ServiceProvider<T> {
 	 */
 	void dispose(@Nonnull T service, @Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription);
 
+	/**
+	 * Get the readiness of a Service that was provided by this ServiceProvider. The default implementation returns a
+	 * completed stage, because services are ready when they are created.
+	 * 
+	 * @param service
+	 *            the Service that was created by this ServiceProvider
+	 * @param serviceInstantiationDescription
+	 *            the description of the Service
+	 * @return the stage which completes when the Service is ready
+	 * @see ServiceHandle#getReadiness()
+	 */
+	@Nonnull
+	default CompletionStage<Void> getReadiness(@Nonnull T service,
+			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
+		return CompletableFuture.completedFuture(null);
+	}
+
 }
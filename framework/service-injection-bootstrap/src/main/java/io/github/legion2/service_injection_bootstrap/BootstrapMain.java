@@ -28,7 +28,7 @@ import io.github.amyassist.amy.core.di.DependencyInjection;
 public class BootstrapMain {
 
 	/**
-	 * The main method.
+	 * The main method. The DependencyInjection is shut down when the JVM exits.
 	 * 
 	 * @param args
 	 *            the arguments passed on the command line
@@ -36,6 +36,7 @@ public class BootstrapMain {
 	public static void main(String[] args) {
 		DependencyInjection di = new DependencyInjection();
 		di.loadServices();
+		Runtime.getRuntime().addShutdownHook(new Thread(di::shutdown, "dependency-injection-shutdown"));
 
 		InitService initService = di.getServiceLocator().getService(InitService.class);
 		initService.init(args);
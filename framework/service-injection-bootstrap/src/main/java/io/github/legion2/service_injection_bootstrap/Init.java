@@ -16,8 +16,24 @@
 
 package io.github.legion2.service_injection_bootstrap;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import io.github.amyassist.amy.core.di.ClassLoaderManager;
 import io.github.amyassist.amy.core.di.ServiceLocator;
@@ -26,16 +42,27 @@ import io.github.amyassist.amy.core.di.annotation.Service;
 import io.github.amyassist.amy.deployment.DeploymentDescriptorUtil;
 
 /**
- * Implementation of the {@link InitService}.
+ * Implementation of the {@link InitService}. The Init components of one ClassLoader are initialized after the Init
+ * components they declare with {@link io.github.legion2.service_injection_bootstrap.annotations.Init#after()}. The
+ * number of threads used to initialize independent Init components in parallel is given by the environment variable
+ * {@value #INIT_THREADS_ENV}, by default the Init components are initialized one after another. After all Init
+ * components are initialized, the time each of them took is reported.
  * 
  * @author Leon Kiefer
  */
 @Service
 public class Init implements InitService {
+	/**
+	 * The environment variable which contains the number of threads used to initialize the Init components.
+	 */
+	static final String INIT_THREADS_ENV = "SERVICE_INJECTION_INIT_THREADS";
+
 	private static final String COMPONENT_DEPLOYMENT_DESCRIPTOR = "META-INF/"
 			+ io.github.legion2.service_injection_bootstrap.annotations.Init.class.getName();
 
-	private Set<InitComponent> initializedComponents = new HashSet<>();
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private Map<Class<?>, InitComponent> initializedComponents = new ConcurrentHashMap<>();
 
 	@Reference
 	private ServiceLocator serviceLocator;
@@ -45,20 +72,109 @@ public class Init implements InitService {
 
 	@Override
 	public void init(String[] args) {
-		for (ClassLoader classLoader : this.classLoaderManager.getClassLoaders()) {
-			Set<Class<?>> classes = DeploymentDescriptorUtil.getClasses(classLoader, COMPONENT_DEPLOYMENT_DESCRIPTOR);
-			Set<InitComponent> initialized = new HashSet<>();
-			for (Class<?> clazz : classes) {
-				initialized.add(this.init(clazz));
+		int threads = initThreads();
+		ExecutorService executorService = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+		Executor executor = executorService != null ? executorService : Runnable::run;
+		List<ComponentTiming> timings = Collections.synchronizedList(new ArrayList<>());
+		long start = System.nanoTime();
+		try {
+			for (ClassLoader classLoader : this.classLoaderManager.getClassLoaders()) {
+				Set<Class<?>> classes = DeploymentDescriptorUtil.getClasses(classLoader,
+						COMPONENT_DEPLOYMENT_DESCRIPTOR);
+				this.init(classes, executor, timings);
+			}
+		} finally {
+			if (executorService != null) {
+				executorService.shutdown();
 			}
+		}
+		this.report(timings, System.nanoTime() - start, threads);
+	}
+
+	private static int initThreads() {
+		String initThreads = System.getenv(INIT_THREADS_ENV);
+		if (initThreads == null || initThreads.isEmpty()) {
+			return 1;
+		}
+		try {
+			int threads = Integer.parseInt(initThreads.trim());
+			if (threads < 1)
+				throw new IllegalArgumentException(INIT_THREADS_ENV + " must be positive, but was " + threads);
+			return threads;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException(INIT_THREADS_ENV + " must be a number, but was " + initThreads, e);
+		}
+	}
+
+	/**
+	 * Initialize the given Init components of one ClassLoader and wait until all of them are initialized.
+	 */
+	private void init(Set<Class<?>> classes, Executor executor, List<ComponentTiming> timings) {
+		List<Class<?>> sorted = new ArrayList<>(classes);
+		sorted.sort(Comparator.comparing(Class::getName));
+
+		Map<Class<?>, CompletableFuture<Void>> scheduled = new HashMap<>();
+		for (Class<?> clazz : sorted) {
+			this.schedule(clazz, classes, scheduled, new LinkedHashSet<>(), executor, timings);
+		}
+
+		try {
+			CompletableFuture.allOf(scheduled.values().toArray(new CompletableFuture<?>[scheduled.size()])).join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException("Can not init the Init components", e.getCause());
+		}
+	}
 
-			this.initializedComponents.addAll(initialized);
+	/**
+	 * Schedule the initialization of the given Init component after the Init components it depends on.
+	 * 
+	 * @param initComponentClass
+	 *            the Init component to schedule
+	 * @param classes
+	 *            the Init components of the current ClassLoader
+	 * @param scheduled
+	 *            the already scheduled Init components of the current ClassLoader
+	 * @param path
+	 *            the Init components whose dependencies are currently resolved, used to detect cycles
+	 * @return the future which completes when the given Init component is initialized
+	 */
+	private CompletableFuture<Void> schedule(Class<?> initComponentClass, Set<Class<?>> classes,
+			Map<Class<?>, CompletableFuture<Void>> scheduled, Set<Class<?>> path, Executor executor,
+			List<ComponentTiming> timings) {
+		CompletableFuture<Void> future = scheduled.get(initComponentClass);
+		if (future != null) {
+			return future;
+		}
+		if (!path.add(initComponentClass)) {
+			throw new IllegalArgumentException("Circular ordering of the Init components " + path);
+		}
+
+		List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+		for (Class<?> after : checkInitComponent(initComponentClass).after()) {
+			if (classes.contains(after)) {
+				dependencies.add(this.schedule(after, classes, scheduled, path, executor, timings));
+			} else if (!this.initializedComponents.containsKey(after)) {
+				throw new IllegalArgumentException("The class " + initComponentClass.getName()
+						+ " must be initialized after " + after.getName()
+						+ ", but it is not a Init component of the same or a previous ClassLoader");
+			}
 		}
+		path.remove(initComponentClass);
+
+		future = CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[dependencies.size()]))
+				.thenRunAsync(() -> timings.add(this.init(initComponentClass)), executor);
+		scheduled.put(initComponentClass, future);
+		return future;
 	}
 
-	private InitComponent init(Class<?> initComponentClass) {
-		if (!initComponentClass
-				.isAnnotationPresent(io.github.legion2.service_injection_bootstrap.annotations.Init.class)) {
+	private static io.github.legion2.service_injection_bootstrap.annotations.Init checkInitComponent(
+			Class<?> initComponentClass) {
+		io.github.legion2.service_injection_bootstrap.annotations.Init annotation = initComponentClass
+				.getAnnotation(io.github.legion2.service_injection_bootstrap.annotations.Init.class);
+		if (annotation == null) {
 			throw new IllegalArgumentException("Missing @Init annotation on class " + initComponentClass.getName());
 		}
 
@@ -67,16 +183,62 @@ public class Init implements InitService {
 					"Init components must implement the InitComponent interface. But the class "
 							+ initComponentClass.getName() + " does not.");
 		}
+		return annotation;
+	}
+
+	private ComponentTiming init(Class<?> initComponentClass) {
+		long start = System.nanoTime();
 		InitComponent initComponent = (InitComponent) this.serviceLocator
 				.createAndInitialize(initComponentClass);
+		long created = System.nanoTime();
 		try {
 			initComponent.init();
 		} catch (Exception e) {
 			throw new IllegalArgumentException(
 					"Can not init " + initComponentClass.getName() + ", because it threw an exception.", e);
 		}
+		long initialized = System.nanoTime();
 
-		return initComponent;
+		this.initializedComponents.put(initComponentClass, initComponent);
+		return new ComponentTiming(initComponentClass, created - start, initialized - created);
 	}
 
+	/**
+	 * Log the time each Init component took, the slowest first.
+	 */
+	private void report(List<ComponentTiming> timings, long total, int threads) {
+		if (!this.logger.isInfoEnabled()) {
+			return;
+		}
+		List<ComponentTiming> sorted = new ArrayList<>(timings);
+		sorted.sort(Comparator.comparingLong(ComponentTiming::total).reversed());
+		StringBuilder report = new StringBuilder();
+		for (ComponentTiming timing : sorted) {
+			report.append(String.format(Locale.ROOT, "%n%10.1f ms %s (create %.1f ms, init %.1f ms)",
+					millis(timing.total()), timing.initComponentClass.getName(), millis(timing.create),
+					millis(timing.init)));
+		}
+		this.logger.info("Initialized {} Init components in {} ms using {} threads:{}", sorted.size(),
+				String.format(Locale.ROOT, "%.1f", millis(total)), threads, report);
+	}
+
+	private static double millis(long nanos) {
+		return nanos / 1_000_000d;
+	}
+
+	private static class ComponentTiming {
+		final Class<?> initComponentClass;
+		final long create;
+		final long init;
+
+		ComponentTiming(Class<?> initComponentClass, long create, long init) {
+			this.initComponentClass = initComponentClass;
+			this.create = create;
+			this.init = init;
+		}
+
+		long total() {
+			return this.create + this.init;
+		}
+	}
 }
@@ -32,6 +32,9 @@ import io.github.legion2.service_injection_bootstrap.InitComponent;
  * must implement the {@link InitComponent} interface. Additional the class MUST be listed in the deployment descriptor
  * <code>META-INF/io.github.legion2.service_injection_bootstrap.annotations.Init</code>. For more information about the
  * deployment descriptor format see {@link DeploymentDescriptorUtil}.
+ * <p>
+ * Init components are initialized in no particular order and may be initialized in parallel, unless the order is
+ * declared with {@link #after()}.
  * 
  * @author Leon Kiefer
  */
@@ -40,5 +43,11 @@ import io.github.legion2.service_injection_bootstrap.InitComponent;
 @Retention(RUNTIME)
 @Target(TYPE)
 public @interface Init {
-
+	/**
+	 * The Init components which must be initialized before this Init component. The Init components must be loaded by
+	 * the same ClassLoader as this Init component or by a ClassLoader whose Init components are initialized before.
+	 * 
+	 * @return the Init components this Init component depends on
+	 */
+	Class<? extends InitComponent>[] after() default {};
 }
@@ -23,9 +23,13 @@
 
 package io.github.amyassist.amy.core.di;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 
@@ -34,7 +38,9 @@ import io.github.amyassist.amy.core.di.provider.ServiceProvider;
 
 /**
  * A implementation of the {@link ContextLocator} used to register and find static context provider for the
- * {@link ServiceProvider}.
+ * {@link ServiceProvider}. If there is no global static context provider for a key, the one of the namespace which
+ * registered the key is used as global fallback. So services outside of a namespace, e.g. loaded by a parent
+ * ClassLoader, still get the context if only one namespace provides it.
  * 
  * @author Leon Kiefer
  */
@@ -42,6 +48,13 @@ class ContextLocatorImpl implements ContextLocator {
 
 	private final Map<String, StaticProvider<?>> staticProviders = new ConcurrentHashMap<>();
 
+	private final Map<String, Map<String, StaticProvider<?>>> namespacedStaticProviders = new ConcurrentHashMap<>();
+
+	/**
+	 * The ClassLoaders are weakly referenced, so the assignment does not prevent unloading them.
+	 */
+	private final Map<ClassLoader, String> namespaces = Collections.synchronizedMap(new WeakHashMap<>());
+
 	/**
 	 * @see Configuration#registerContextProvider(String, StaticProvider)
 	 */
@@ -49,11 +62,51 @@ class ContextLocatorImpl implements ContextLocator {
 		this.staticProviders.put(key, staticProvider);
 	}
 
+	/**
+	 * @see Configuration#registerContextProvider(String, String, StaticProvider)
+	 */
+	public void registerContextProvider(String namespace, String key, StaticProvider<?> staticProvider) {
+		this.namespacedStaticProviders.computeIfAbsent(namespace, n -> new ConcurrentHashMap<>()).put(key,
+				staticProvider);
+	}
+
+	/**
+	 * @see Configuration#registerContextNamespace(ClassLoader, String)
+	 */
+	public void registerContextNamespace(@Nonnull ClassLoader classLoader, String namespace) {
+		this.namespaces.put(classLoader, namespace);
+	}
+
 	@Override
 	public StaticProvider<?> getContextProvider(@Nonnull String contextProviderType) {
-		if (!this.staticProviders.containsKey(contextProviderType))
+		StaticProvider<?> staticProvider = this.staticProviders.get(contextProviderType);
+		if (staticProvider != null)
+			return staticProvider;
+
+		List<String> namespaces = this.namespacedStaticProviders.entrySet().stream()
+				.filter(entry -> entry.getValue().containsKey(contextProviderType)).map(Map.Entry::getKey).sorted()
+				.collect(Collectors.toList());
+		if (namespaces.isEmpty())
 			throw new NoSuchElementException(contextProviderType);
-		return this.staticProviders.get(contextProviderType);
+		if (namespaces.size() > 1)
+			throw new IllegalStateException("The context provider " + contextProviderType
+					+ " is ambiguous, because there is no global one and it is registered in the namespaces "
+					+ namespaces);
+		return this.namespacedStaticProviders.get(namespaces.get(0)).get(contextProviderType);
+	}
+
+	@Override
+	public StaticProvider<?> getContextProvider(@Nonnull Class<?> implementationClass,
+			@Nonnull String contextProviderType) {
+		ClassLoader classLoader = implementationClass.getClassLoader();
+		String namespace = classLoader == null ? null : this.namespaces.get(classLoader);
+		if (namespace != null) {
+			StaticProvider<?> staticProvider = this.namespacedStaticProviders
+					.getOrDefault(namespace, Collections.emptyMap()).get(contextProviderType);
+			if (staticProvider != null)
+				return staticProvider;
+		}
+		return this.getContextProvider(contextProviderType);
 	}
 
 }
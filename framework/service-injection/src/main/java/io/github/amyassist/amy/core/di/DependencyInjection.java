@@ -138,4 +138,12 @@ public class DependencyInjection {
 						new ServiceConsumerImpl<>(this.getClass(), new ServiceDescriptionImpl<>(ServiceLocator.class)))
 				.getService();
 	}
+
+	/**
+	 * Shut down the DependencyInjection. All Services created by it are disposed, the dependents of a Service before
+	 * the Service itself, and the shared pool of the {@link TaskScheduler} Services is shut down.
+	 */
+	public void shutdown() {
+		this.internalServiceLocator.shutdown();
+	}
 }
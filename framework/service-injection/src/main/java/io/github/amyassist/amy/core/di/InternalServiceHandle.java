@@ -25,8 +25,10 @@ package io.github.amyassist.amy.core.di;
 
 import javax.annotation.Nonnull;
 
+import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+
 /**
- * TODO: Description
+ * A Service instance in the service pool, together with the information needed to recreate it.
  * 
  * @author Leon Kiefer
  */
@@ -34,14 +36,23 @@ class InternalServiceHandle<T> {
 
 	private final T service;
 	private final ServiceCreation<T> serviceCreation;
+	private final ServiceConsumer<T> serviceConsumer;
+	private final ServiceInstantiationDescription<T> serviceInstantiationDescription;
 
 	/**
 	 * @param service
 	 * @param serviceCreation
+	 * @param serviceConsumer
+	 *            the consumer for which the service was created
+	 * @param serviceInstantiationDescription
+	 *            the description from which the service was created
 	 */
-	public InternalServiceHandle(T service, ServiceCreation<T> serviceCreation) {
+	public InternalServiceHandle(T service, ServiceCreation<T> serviceCreation, ServiceConsumer<T> serviceConsumer,
+			ServiceInstantiationDescription<T> serviceInstantiationDescription) {
 		this.service = service;
 		this.serviceCreation = serviceCreation;
+		this.serviceConsumer = serviceConsumer;
+		this.serviceInstantiationDescription = serviceInstantiationDescription;
 	}
 
 	/**
@@ -53,4 +64,28 @@ class InternalServiceHandle<T> {
 	T getService() {
 		return this.service;
 	}
+
+	/**
+	 * @return the creation information of the service, which knows the dependents of the service
+	 */
+	@Nonnull
+	ServiceCreation<T> getServiceCreation() {
+		return this.serviceCreation;
+	}
+
+	/**
+	 * @return the consumer for which the service was created, used to compute the context of the service again
+	 */
+	@Nonnull
+	ServiceConsumer<T> getServiceConsumer() {
+		return this.serviceConsumer;
+	}
+
+	/**
+	 * @return the description from which the service was created
+	 */
+	@Nonnull
+	ServiceInstantiationDescription<T> getServiceInstantiationDescription() {
+		return this.serviceInstantiationDescription;
+	}
 }
@@ -23,12 +23,19 @@
 
 package io.github.amyassist.amy.core.di;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import javax.annotation.Nonnull;
 import javax.annotation.ParametersAreNullableByDefault;
@@ -58,11 +65,20 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 
 	private final Map<ServicePoolKey<?>, ServiceCreation<?>> serviceCreationInfos;
 
+	/**
+	 * Services which were replaced in the service pool by a rebind, but are still injected in other Services. Guarded
+	 * by the lock of the servicePool.
+	 */
+	private final Map<InternalServiceHandle<?>, ServicePoolKey<?>> retiredServices;
+
 	@Nonnull
 	private final ContextLocatorImpl contextLocator;
 
 	private Consumer<ClassServiceProvider<?>> onRegister;
 
+	@Nonnull
+	private final TaskSchedulerProvider taskSchedulerProvider;
+
 	/**
 	 * 
 	 * @param onRegister
@@ -72,11 +88,14 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 		this.register = new ConcurrentHashMap<>();
 		this.servicePool = new ConcurrentHashMap<>();
 		this.serviceCreationInfos = new ConcurrentHashMap<>();
+		this.retiredServices = new HashMap<>();
 		this.contextLocator = new ContextLocatorImpl();
 
 		this.registerContextProvider("class", new ClassProvider());
 		this.register(new ServiceLocatorProvider(this));
 		this.register(new ConfigurationProvider(this));
+		this.taskSchedulerProvider = new TaskSchedulerProvider();
+		this.register(this.taskSchedulerProvider);
 	}
 
 	public <T> void register(@Nonnull ServiceProvider<T> serviceProvider) {
@@ -97,6 +116,266 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 		this.contextLocator.registerContextProvider(key, staticProvider);
 	}
 
+	/**
+	 * Replace the context provider of the given key and recreate the services of the pool whose context changed. The
+	 * new instance is created before the old one is removed from the pool, so concurrent lookups get either the old or
+	 * the new instance. Afterwards the services of the pool which depend on a replaced instance are recreated the same
+	 * way, after the recreated services they depend on, so the new instances are injected into them. The old instances
+	 * are disposed when no Service of the pool depends on them anymore. If the service provider can not provide a
+	 * service with the new context, the old instance stays in the pool.
+	 * 
+	 * @param key
+	 *            the key of the context provider
+	 * @param staticProvider
+	 *            the new context provider
+	 * @see Configuration#rebindContextProvider(String, StaticProvider)
+	 */
+	public void rebindContextProvider(String key, StaticProvider<?> staticProvider) {
+		this.contextLocator.registerContextProvider(key, staticProvider);
+		this.rebind(key);
+	}
+
+	public void registerContextProvider(String namespace, String key, StaticProvider<?> staticProvider) {
+		this.contextLocator.registerContextProvider(namespace, key, staticProvider);
+	}
+
+	/**
+	 * @param namespace
+	 *            the namespace of the context provider
+	 * @param key
+	 *            the key of the context provider
+	 * @param staticProvider
+	 *            the new context provider
+	 * @see #rebindContextProvider(String, StaticProvider)
+	 */
+	public void rebindContextProvider(String namespace, String key, StaticProvider<?> staticProvider) {
+		this.contextLocator.registerContextProvider(namespace, key, staticProvider);
+		this.rebind(key);
+	}
+
+	public void registerContextNamespace(@Nonnull ClassLoader classLoader, String namespace) {
+		this.contextLocator.registerContextNamespace(classLoader, namespace);
+	}
+
+	private void rebind(String key) {
+		List<ServicePoolKey<?>> affected = this.servicePool.keySet().stream()
+				.filter(poolKey -> poolKey.context.containsKey(key)).collect(Collectors.toList());
+		Set<ServiceCreation<?>> replaced = new HashSet<>();
+		RuntimeException failure = null;
+		for (ServicePoolKey<?> poolKey : affected) {
+			try {
+				ServiceCreation<?> serviceCreation = this.rebind(poolKey);
+				if (serviceCreation != null) {
+					replaced.add(serviceCreation);
+				}
+			} catch (RuntimeException e) {
+				failure = addFailure(failure, e);
+			}
+		}
+		try {
+			this.recreateDependents(replaced);
+		} catch (RuntimeException e) {
+			failure = addFailure(failure, e);
+		}
+		try {
+			this.disposeRetiredServices(false);
+		} catch (RuntimeException e) {
+			failure = addFailure(failure, e);
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	private static RuntimeException addFailure(RuntimeException failure, RuntimeException e) {
+		if (failure == null)
+			return e;
+		failure.addSuppressed(e);
+		return failure;
+	}
+
+	/**
+	 * @return the ServiceCreation of the replaced instance or null if the service was not replaced
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> ServiceCreation<?> rebind(ServicePoolKey<T> poolKey) {
+		InternalServiceHandle<T> serviceHandle = (InternalServiceHandle<T>) this.servicePool.get(poolKey);
+		if (serviceHandle == null)
+			return null;
+		ServiceProvider<T> serviceProvider = poolKey.serviceProvider;
+		ServiceConsumer<T> serviceConsumer = serviceHandle.getServiceConsumer();
+		ServiceInstantiationDescription<T> serviceInstantiationDescription = serviceProvider
+				.getServiceInstantiationDescription(this.contextLocator, serviceConsumer);
+		if (serviceInstantiationDescription == null
+				|| poolKey.equals(new ServicePoolKey<>(serviceProvider, serviceInstantiationDescription)))
+			return null;
+		this.claimService(new ServiceCreation<>("[R]" + serviceConsumer.getConsumerClass().getName()),
+				serviceProvider, serviceInstantiationDescription, serviceConsumer);
+
+		synchronized (this.servicePool) {
+			if (this.servicePool.remove(poolKey, serviceHandle)) {
+				this.serviceCreationInfos.remove(poolKey);
+				this.retiredServices.put(serviceHandle, poolKey);
+				return serviceHandle.getServiceCreation();
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Recreate the services of the pool which transitively depend on one of the replaced instances. A service is
+	 * recreated after the services it depends on, so it gets their new instances injected. If the dependents have a
+	 * cycle, the remaining services are recreated in no particular order. If a service can not be recreated, the old
+	 * instance stays in the pool and the first exception is thrown at the end.
+	 * 
+	 * @param replaced
+	 *            the ServiceCreations of the replaced instances
+	 */
+	private void recreateDependents(Set<ServiceCreation<?>> replaced) {
+		Map<ServicePoolKey<?>, InternalServiceHandle<?>> dependents = new HashMap<>();
+		synchronized (this.servicePool) {
+			Set<ServiceCreation<?>> changed = new HashSet<>(replaced);
+			while (!changed.isEmpty()) {
+				Set<ServiceCreation<?>> next = new HashSet<>();
+				for (Map.Entry<ServicePoolKey<?>, InternalServiceHandle<?>> entry : this.servicePool.entrySet()) {
+					ServiceCreation<?> serviceCreation = entry.getValue().getServiceCreation();
+					if (!dependents.containsKey(entry.getKey()) && serviceCreation.hasDependencyIn(changed)) {
+						dependents.put(entry.getKey(), entry.getValue());
+						next.add(serviceCreation);
+					}
+				}
+				changed = next;
+			}
+		}
+
+		RuntimeException failure = null;
+		while (!dependents.isEmpty()) {
+			Set<ServiceCreation<?>> remaining = dependents.values().stream()
+					.map(InternalServiceHandle::getServiceCreation).collect(Collectors.toSet());
+			List<ServicePoolKey<?>> independent = dependents.entrySet().stream()
+					.filter(entry -> !entry.getValue().getServiceCreation().hasDependencyIn(remaining))
+					.map(Map.Entry::getKey).collect(Collectors.toList());
+			if (independent.isEmpty()) {
+				independent = new ArrayList<>(dependents.keySet());
+			}
+			for (ServicePoolKey<?> poolKey : independent) {
+				try {
+					this.recreate(poolKey, dependents.remove(poolKey));
+				} catch (RuntimeException e) {
+					failure = addFailure(failure, e);
+				}
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Create a new instance of the service with the same context and retire the old instance.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> void recreate(ServicePoolKey<T> poolKey, InternalServiceHandle<?> oldServiceHandle) {
+		InternalServiceHandle<T> serviceHandle = (InternalServiceHandle<T>) oldServiceHandle;
+		synchronized (this.servicePool) {
+			if (this.servicePool.get(poolKey) != serviceHandle)
+				return;
+			this.serviceCreationInfos.remove(poolKey);
+		}
+		ServiceConsumer<T> serviceConsumer = serviceHandle.getServiceConsumer();
+		try {
+			this.claimService(new ServiceCreation<>("[R]" + serviceConsumer.getConsumerClass().getName()),
+					poolKey.serviceProvider, serviceHandle.getServiceInstantiationDescription(), serviceConsumer);
+		} catch (RuntimeException e) {
+			synchronized (this.servicePool) {
+				if (this.servicePool.get(poolKey) == serviceHandle) {
+					// lookups get the old instance again instead of the failed creation
+					this.serviceCreationInfos.put(poolKey, serviceHandle.getServiceCreation());
+				}
+			}
+			throw e;
+		}
+		synchronized (this.servicePool) {
+			if (this.servicePool.get(poolKey) != serviceHandle) {
+				this.retiredServices.put(serviceHandle, poolKey);
+			}
+		}
+	}
+
+	/**
+	 * Dispose the retired Services on which no Service of the pool and no other retired Service depends, the dependents
+	 * before their dependencies. If the disposal of a Service fails, the other Services are still disposed and the
+	 * first exception is thrown at the end.
+	 * 
+	 * @param all
+	 *            if the retired Services which still have dependents should be disposed too, because the dependency
+	 *            graph has a cycle. They are disposed after the other Services in no particular order.
+	 */
+	private void disposeRetiredServices(boolean all) {
+		Map<InternalServiceHandle<?>, ServicePoolKey<?>> disposalOrder = new LinkedHashMap<>();
+		synchronized (this.servicePool) {
+			Set<ServiceCreation<?>> pooled = this.servicePool.values().stream()
+					.map(InternalServiceHandle::getServiceCreation).collect(Collectors.toSet());
+			List<InternalServiceHandle<?>> remaining = new ArrayList<>(this.retiredServices.keySet());
+			List<InternalServiceHandle<?>> independent;
+			do {
+				Set<ServiceCreation<?>> blocking = remaining.stream().map(InternalServiceHandle::getServiceCreation)
+						.collect(Collectors.toSet());
+				blocking.addAll(pooled);
+				independent = remaining.stream()
+						.filter(serviceHandle -> !serviceHandle.getServiceCreation().hasDependentIn(blocking))
+						.collect(Collectors.toList());
+				for (InternalServiceHandle<?> serviceHandle : independent) {
+					disposalOrder.put(serviceHandle, this.retiredServices.remove(serviceHandle));
+				}
+				remaining.removeAll(independent);
+			} while (!independent.isEmpty());
+			if (all) {
+				for (InternalServiceHandle<?> serviceHandle : remaining) {
+					disposalOrder.put(serviceHandle, this.retiredServices.remove(serviceHandle));
+				}
+			}
+		}
+
+		RuntimeException failure = null;
+		for (Map.Entry<InternalServiceHandle<?>, ServicePoolKey<?>> entry : disposalOrder.entrySet()) {
+			try {
+				this.dispose(entry.getValue(), entry.getKey());
+			} catch (RuntimeException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+		if (failure != null)
+			throw failure;
+	}
+
+	/**
+	 * Remove all Services from the service pool and dispose them together with the retired Services, the dependents of
+	 * a Service before the Service itself. Afterwards the shared pool of the TaskSchedulers is shut down. If the
+	 * disposal of a Service fails, the other Services are still disposed and the first exception is thrown at the end.
+	 */
+	public void shutdown() {
+		synchronized (this.servicePool) {
+			this.servicePool.forEach((poolKey, serviceHandle) -> this.retiredServices.put(serviceHandle, poolKey));
+			this.serviceCreationInfos.keySet().removeAll(this.servicePool.keySet());
+			this.servicePool.clear();
+		}
+
+		try {
+			this.disposeRetiredServices(true);
+		} finally {
+			this.taskSchedulerProvider.shutdown();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> void dispose(ServicePoolKey<T> poolKey, InternalServiceHandle<?> serviceHandle) {
+		InternalServiceHandle<T> handle = (InternalServiceHandle<T>) serviceHandle;
+		poolKey.serviceProvider.dispose(handle.getService(), handle.getServiceInstantiationDescription());
+	}
+
 	@Override
 	public <T> ServiceHandle<T> getService(@Nonnull ServiceConsumer<T> serviceConsumer) {
 		return this.getService(new ServiceCreation<>("[V]" + serviceConsumer.getConsumerClass().getName()), serviceConsumer);
@@ -120,13 +399,14 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 		if (serviceInstantiationDescription == null) {
 			throw new ServiceNotFoundException(serviceConsumer.getServiceDescription(), dependentServiceCreation);
 		}
-		return this.claimService(dependentServiceCreation, provider, serviceInstantiationDescription);
+		return this.claimService(dependentServiceCreation, provider, serviceInstantiationDescription, serviceConsumer);
 	}
 
 	@SuppressWarnings("unchecked")
 	private <T> Future<ServiceHandle<T>> lookUpOrCreateService(@Nonnull ServiceCreation<?> dependentServiceCreation,
 			@Nonnull ServiceProvider<T> serviceProvider,
-			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
+			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription,
+			@Nonnull ServiceConsumer<T> serviceConsumer) {
 		ServicePoolKey<T> key = new ServicePoolKey<>(serviceProvider, serviceInstantiationDescription);
 		synchronized (this.servicePool) {
 			ServiceCreation<T> serviceCreation;
@@ -140,9 +420,11 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 					SimpleServiceLocatorImpl tempLocator = new SimpleServiceLocatorImpl(this, serviceCreation);
 					T service = serviceProvider.createService(tempLocator, serviceInstantiationDescription);
 					tempLocator.destroy();
-					InternalServiceHandle<T> serviceHandle = new InternalServiceHandle<>(service, serviceCreation);
+					InternalServiceHandle<T> serviceHandle = new InternalServiceHandle<>(service, serviceCreation,
+							serviceConsumer, serviceInstantiationDescription);
 					this.servicePool.put(key, serviceHandle);
-					return new ServiceHandleImpl<>(service);
+					return new ServiceHandleImpl<>(MemoizingInvocationHandler.wrap(key.serviceType, service),
+							serviceProvider.getReadiness(service, serviceInstantiationDescription));
 				});
 
 				this.serviceCreationInfos.put(key, serviceCreation);
@@ -162,15 +444,18 @@ public class InternalServiceLocator implements SimpleServiceLocator {
 	 *            the serviceProvider used to create the service if needed
 	 * @param serviceInstantiationDescription
 	 *            the service which should be claimed
+	 * @param serviceConsumer
+	 *            the consumer of the service
 	 * @return the claimed Service
 	 * @param <T>
 	 *            the type of the service
 	 */
 	private <T> ServiceHandle<T> claimService(@Nonnull ServiceCreation<?> dependentServiceCreationInfo,
 			@Nonnull ServiceProvider<T> serviceProvider,
-			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
+			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription,
+			@Nonnull ServiceConsumer<T> serviceConsumer) {
 		Future<ServiceHandle<T>> createService = this.lookUpOrCreateService(dependentServiceCreationInfo, serviceProvider,
-				serviceInstantiationDescription);
+				serviceInstantiationDescription, serviceConsumer);
 		try {
 			return createService.get();
 		} catch (InterruptedException e) {
@@ -0,0 +1,205 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import javax.annotation.Nonnull;
+
+import io.github.amyassist.amy.core.di.annotation.Memoize;
+
+/**
+ * Caches the results of the methods annotated with {@link Memoize} of a service type and delegates all other calls to
+ * the service instance. Concurrent calls with the same arguments wait for the first call instead of calling the service
+ * again. Failed calls are not cached.
+ * 
+ * @author Leon Kiefer
+ */
+class MemoizingInvocationHandler implements InvocationHandler {
+	private static final ClassValue<Map<Method, Memoize>> MEMOIZED_METHODS = new ClassValue<Map<Method, Memoize>>() {
+		@Override
+		protected Map<Method, Memoize> computeValue(Class<?> type) {
+			Map<Method, Memoize> methods = new HashMap<>();
+			if (type.isInterface()) {
+				for (Method method : type.getMethods()) {
+					Memoize memoize = method.getAnnotation(Memoize.class);
+					if (memoize != null && method.getReturnType() != void.class) {
+						methods.put(method, memoize);
+					}
+				}
+			}
+			return Collections.unmodifiableMap(methods);
+		}
+	};
+
+	private final Object service;
+	private final Map<Method, Cache> caches = new HashMap<>();
+
+	private MemoizingInvocationHandler(Object service, Map<Method, Memoize> memoizedMethods) {
+		this.service = service;
+		memoizedMethods.forEach((method, memoize) -> this.caches.put(method, new Cache(memoize)));
+	}
+
+	/**
+	 * Wrap the service if the service type is an interface with methods annotated with {@link Memoize}.
+	 * 
+	 * @param serviceType
+	 *            the type of the service
+	 * @param service
+	 *            the service instance
+	 * @return a proxy of the service type which caches the results of the memoized methods or the service itself
+	 * @param <T>
+	 *            the type of the service
+	 */
+	@Nonnull
+	static <T> T wrap(@Nonnull Class<T> serviceType, @Nonnull T service) {
+		Map<Method, Memoize> memoizedMethods = MEMOIZED_METHODS.get(serviceType);
+		if (memoizedMethods.isEmpty()) {
+			return service;
+		}
+		return serviceType.cast(Proxy.newProxyInstance(serviceType.getClassLoader(), new Class<?>[] { serviceType },
+				new MemoizingInvocationHandler(service, memoizedMethods)));
+	}
+
+	@Override
+	public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+		Cache cache = this.caches.get(method);
+		if (cache == null) {
+			return this.invoke(method, args);
+		}
+
+		Key key = new Key(args);
+		CompletableFuture<Object> result = new CompletableFuture<>();
+		CompletableFuture<Object> cached = cache.putIfAbsent(key, result);
+		if (cached != null) {
+			try {
+				return cached.join();
+			} catch (CompletionException e) {
+				throw e.getCause();
+			}
+		}
+		try {
+			Object value = this.invoke(method, args);
+			result.complete(value);
+			return value;
+		} catch (Throwable t) {
+			cache.remove(key, result);
+			result.completeExceptionally(t);
+			throw t;
+		}
+	}
+
+	private Object invoke(Method method, Object[] args) throws Throwable {
+		try {
+			return method.invoke(this.service, args);
+		} catch (InvocationTargetException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * A bounded least recently used cache with an optional time to live.
+	 */
+	private static class Cache {
+		private final long ttl;
+		private final Map<Key, Entry> entries;
+
+		Cache(Memoize memoize) {
+			this.ttl = memoize.ttl();
+			int maxSize = memoize.maxSize();
+			this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+					return this.size() > maxSize;
+				}
+			};
+		}
+
+		/**
+		 * Cache the given result if no result is cached for the key or the cached result expired.
+		 * 
+		 * @return the cached result, which may still be computed, or null if the given result was cached
+		 */
+		synchronized CompletableFuture<Object> putIfAbsent(Key key, CompletableFuture<Object> result) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && (this.ttl <= 0 || System.nanoTime() - entry.created <= this.ttl * 1_000_000L)) {
+				return entry.value;
+			}
+			this.entries.put(key, new Entry(result, System.nanoTime()));
+			return null;
+		}
+
+		/**
+		 * Remove the given result if it is still cached for the key.
+		 */
+		synchronized void remove(Key key, CompletableFuture<Object> result) {
+			Entry entry = this.entries.get(key);
+			if (entry != null && entry.value == result) {
+				this.entries.remove(key);
+			}
+		}
+	}
+
+	private static class Entry {
+		private final CompletableFuture<Object> value;
+		private final long created;
+
+		Entry(CompletableFuture<Object> value, long created) {
+			this.value = value;
+			this.created = created;
+		}
+	}
+
+	private static class Key {
+		private final Object[] args;
+		private final int hashCode;
+
+		Key(Object[] args) {
+			this.args = args == null ? new Object[0] : args.clone();
+			this.hashCode = Arrays.deepHashCode(this.args);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof Key && Arrays.deepEquals(this.args, ((Key) obj).args);
+		}
+	}
+}
@@ -73,6 +73,28 @@ public class ServiceCreation<T> {
 		return false;
 	}
 
+	/**
+	 * Check if one of the given ServiceCreations directly depends on this.
+	 * 
+	 * @param serviceCreations
+	 *            the given ServiceCreations
+	 * @return true if one of the given serviceCreations is a dependent of this
+	 */
+	boolean hasDependentIn(Set<ServiceCreation<?>> serviceCreations) {
+		return this.dependents.stream().anyMatch(serviceCreations::contains);
+	}
+
+	/**
+	 * Check if this directly depends on one of the given ServiceCreations.
+	 * 
+	 * @param serviceCreations
+	 *            the given ServiceCreations
+	 * @return true if one of the given serviceCreations is a dependency of this
+	 */
+	boolean hasDependencyIn(Set<ServiceCreation<?>> serviceCreations) {
+		return this.dependencies.stream().anyMatch(serviceCreations::contains);
+	}
+
 	/**
 	 * Add a other ServiceCreationInfo as a dependent ServiceCreationInfo to this.
 	 * 
@@ -23,6 +23,8 @@
 
 package io.github.amyassist.amy.core.di;
 
+import java.util.concurrent.CompletionStage;
+
 import javax.annotation.Nonnull;
 
 import io.github.amyassist.amy.core.di.provider.ServiceHandle;
@@ -35,15 +37,20 @@ import io.github.amyassist.amy.core.di.provider.ServiceHandle;
 class ServiceHandleImpl<T> implements ServiceHandle<T> {
 	@Nonnull
 	private final T service;
+	@Nonnull
+	private final CompletionStage<Void> readiness;
 
 	/**
 	 * Create a new ServiceHandle with a given service instance
 	 * 
 	 * @param service
 	 *            the service instance for this ServiceHandle
+	 * @param readiness
+	 *            the readiness of the service
 	 */
-	public ServiceHandleImpl(@Nonnull T service) {
+	public ServiceHandleImpl(@Nonnull T service, @Nonnull CompletionStage<Void> readiness) {
 		this.service = service;
+		this.readiness = readiness;
 	}
 
 	@Nonnull
@@ -52,4 +59,10 @@ class ServiceHandleImpl<T> implements ServiceHandle<T> {
 		return this.service;
 	}
 
+	@Nonnull
+	@Override
+	public CompletionStage<Void> getReadiness() {
+		return this.readiness;
+	}
+
 }
@@ -23,11 +23,18 @@
 
 package io.github.amyassist.amy.core.di.provider;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import javax.annotation.Nonnull;
 
@@ -38,10 +45,11 @@ import io.github.amyassist.amy.core.di.ServiceDescription;
 import io.github.amyassist.amy.core.di.ServiceInstantiationDescription;
 import io.github.amyassist.amy.core.di.SimpleServiceLocator;
 import io.github.amyassist.amy.core.di.annotation.Context;
-import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+import io.github.amyassist.amy.core.di.context.provider.StaticProvider;
 import io.github.amyassist.amy.core.di.runtime.ServiceDescriptionImpl;
 import io.github.amyassist.amy.core.di.runtime.ServiceInstantiationDescriptionImpl;
+import io.github.amyassist.amy.core.di.util.ServiceLocatorUtil;
 import io.github.amyassist.amy.core.di.util.Util;
 
 /**
@@ -57,8 +65,17 @@ public class ClassServiceProvider<T> implements ServiceProvider<T> {
 	@Nonnull
 	private final ServiceDescription<T> serviceDescription;
 
-	private final Set<InjectionPoint> injectionPoints = new HashSet<>();
+	@Nonnull
+	private final MethodHandle constructor;
+	@Nonnull
+	private final ServiceConsumer<?>[] constructorParameters;
+
+	private final List<InjectionPoint> injectionPoints;
 	private final Set<ContextInjectionPoint> contextInjectionPoints = new HashSet<>();
+	/**
+	 * the readiness of the created services which are not ready yet, by identity of the service
+	 */
+	private final Map<T, CompletionStage<Void>> readiness = Collections.synchronizedMap(new IdentityHashMap<>());
 
 	/**
 	 * 
@@ -94,11 +111,11 @@ public class ClassServiceProvider<T> implements ServiceProvider<T> {
 			throw new IllegalArgumentException(
 					"There is a problem with the class " + cls.getName() + ". It can't be used as a Service");
 		this.cls = cls;
+		this.constructor = Util.constructorHandle(cls);
 
-		Field[] dependencyFields = FieldUtils.getFieldsWithAnnotation(cls, Reference.class);
-		for (Field field : dependencyFields) {
-			this.injectionPoints.add(new InjectionPoint(field));
-		}
+		this.constructorParameters = ServiceLocatorUtil.constructorConsumers(cls);
+
+		this.injectionPoints = InjectionPoint.referencesOf(cls);
 
 		Field[] contextFields = FieldUtils.getFieldsWithAnnotation(cls, Context.class);
 		for (Field field : contextFields) {
@@ -117,7 +134,16 @@ public class ClassServiceProvider<T> implements ServiceProvider<T> {
 		HashMap<String, Object> map = new HashMap<>();
 		for (ContextInjectionPoint c : this.contextInjectionPoints) {
 			String key = c.getContextIdentifier();
-			map.put(key, locator.getContextProvider(key).getContext(serviceConsumer));
+			StaticProvider<?> staticProvider;
+			try {
+				staticProvider = locator.getContextProvider(this.cls, key);
+			} catch (NoSuchElementException e) {
+				if (!c.isOptional())
+					throw e;
+				map.put(key, null);
+				continue;
+			}
+			map.put(key, staticProvider.getContext(serviceConsumer));
 		}
 
 		return new ServiceInstantiationDescriptionImpl<>(serviceConsumer.getServiceDescription(), map, this.cls);
@@ -128,7 +154,7 @@ public class ClassServiceProvider<T> implements ServiceProvider<T> {
 			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
 
 		@Nonnull
-		T serviceInstance = this.createService();
+		T serviceInstance = this.createService(locator);
 		for (InjectionPoint injectionPoint : this.injectionPoints) {
 			ServiceConsumer<?> serviceConsumer = injectionPoint.getServiceConsumer();
 			ServiceHandle<?> serviceHandle = locator.getService(serviceConsumer);
@@ -140,23 +166,40 @@ public class ClassServiceProvider<T> implements ServiceProvider<T> {
 			contextInjectionPoint.inject(serviceInstance, context.get(contextInjectionPoint.getContextIdentifier()));
 		}
 
-		Util.postConstruct(serviceInstance);
+		CompletionStage<Void> readiness = Util.postConstruct(serviceInstance);
+		if (!readiness.toCompletableFuture().isDone()) {
+			this.readiness.put(serviceInstance, readiness);
+		}
 		return serviceInstance;
 	}
 
-	private T createService() {
+	private T createService(@Nonnull SimpleServiceLocator locator) {
+		Object[] arguments = new Object[this.constructorParameters.length];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = locator.getService(this.constructorParameters[i]).getService();
+		}
+
 		try {
-			return this.cls.newInstance();
-		} catch (InstantiationException | IllegalAccessException e) {
-			throw new IllegalStateException("The constructor of " + this.cls.getName() + " should have been checked",
-					e);
+			return this.cls.cast(this.constructor.invokeExact(arguments));
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new IllegalStateException("The constructor of " + this.cls.getName() + " throw an exception", e);
 		}
 	}
 
 	@Override
 	public void dispose(@Nonnull T service,
 			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
+		this.readiness.remove(service);
 		Util.preDestroy(service);
 	}
 
+	@Override
+	public CompletionStage<Void> getReadiness(@Nonnull T service,
+			@Nonnull ServiceInstantiationDescription<T> serviceInstantiationDescription) {
+		CompletionStage<Void> serviceReadiness = this.readiness.get(service);
+		return serviceReadiness == null ? CompletableFuture.completedFuture(null) : serviceReadiness;
+	}
+
 }
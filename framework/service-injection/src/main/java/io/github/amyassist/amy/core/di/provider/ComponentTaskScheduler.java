@@ -0,0 +1,184 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di.provider;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.function.Function;
+
+import javax.annotation.Nonnull;
+
+import io.github.amyassist.amy.core.di.TaskScheduler;
+
+/**
+ * TaskScheduler of one consumer class, which schedules on the shared pool and accounts the tasks of the consumer.
+ * 
+ * @author Leon Kiefer
+ */
+class ComponentTaskScheduler implements TaskScheduler {
+	@Nonnull
+	private final ScheduledExecutorService executor;
+	@Nonnull
+	private final Class<?> consumerClass;
+
+	private final Set<ScheduledFuture<?>> tasks = new HashSet<>();
+	private boolean disposed = false;
+
+	private final AtomicLong executions = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong totalSkew = new AtomicLong();
+	private final LongAccumulator maxSkew = new LongAccumulator(Math::max, 0);
+	private final AtomicLong totalExecutionTime = new AtomicLong();
+
+	/**
+	 * @param executor
+	 *            the shared pool
+	 * @param consumerClass
+	 *            the class this instance is injected in
+	 */
+	ComponentTaskScheduler(@Nonnull ScheduledExecutorService executor, @Nonnull Class<?> consumerClass) {
+		this.executor = executor;
+		this.consumerClass = consumerClass;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(@Nonnull Runnable task, long delay, @Nonnull TimeUnit unit) {
+		return this.submit(new TrackedTask(task, unit.toNanos(delay), 0),
+				trackedTask -> this.executor.schedule(trackedTask, delay, unit));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(@Nonnull Runnable task, long initialDelay, long period,
+			@Nonnull TimeUnit unit) {
+		return this.submit(new TrackedTask(task, unit.toNanos(initialDelay), unit.toNanos(period)),
+				trackedTask -> this.executor.scheduleAtFixedRate(trackedTask, initialDelay, period, unit));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(@Nonnull Runnable task, long initialDelay, long delay,
+			@Nonnull TimeUnit unit) {
+		return this.submit(new TrackedTask(task, unit.toNanos(initialDelay), -unit.toNanos(delay)),
+				trackedTask -> this.executor.scheduleWithFixedDelay(trackedTask, initialDelay, delay, unit));
+	}
+
+	private ScheduledFuture<?> submit(TrackedTask trackedTask,
+			Function<TrackedTask, ScheduledFuture<?>> scheduling) {
+		synchronized (this.tasks) {
+			if (this.disposed)
+				throw new RejectedExecutionException(
+						"The TaskScheduler of " + this.consumerClass.getName() + " is disposed");
+			this.tasks.removeIf(Future::isDone);
+			ScheduledFuture<?> future = scheduling.apply(trackedTask);
+			this.tasks.add(future);
+			return future;
+		}
+	}
+
+	/**
+	 * Cancel all tasks of the consumer and reject new tasks. Running executions are not interrupted.
+	 */
+	void dispose() {
+		synchronized (this.tasks) {
+			this.disposed = true;
+			this.tasks.forEach(future -> future.cancel(false));
+			this.tasks.clear();
+		}
+	}
+
+	@Override
+	public int getPendingTaskCount() {
+		synchronized (this.tasks) {
+			this.tasks.removeIf(Future::isDone);
+			return this.tasks.size();
+		}
+	}
+
+	@Override
+	public long getExecutionCount() {
+		return this.executions.get();
+	}
+
+	@Override
+	public long getFailureCount() {
+		return this.failures.get();
+	}
+
+	@Override
+	public long getAverageSkew(@Nonnull TimeUnit unit) {
+		long count = this.executions.get();
+		return count == 0 ? 0 : unit.convert(this.totalSkew.get() / count, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public long getMaxSkew(@Nonnull TimeUnit unit) {
+		return unit.convert(this.maxSkew.get(), TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public long getAverageExecutionTime(@Nonnull TimeUnit unit) {
+		long count = this.executions.get();
+		return count == 0 ? 0 : unit.convert(this.totalExecutionTime.get() / count, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Wrapper of a task which measures the skew and the duration of each execution. The executions of one task never
+	 * overlap, so the planned start needs no synchronization.
+	 */
+	private class TrackedTask implements Runnable {
+		private final Runnable task;
+		/**
+		 * positive for a fixed rate, negative for a fixed delay and zero for a one-shot task
+		 */
+		private final long period;
+		private long plannedStart;
+
+		TrackedTask(Runnable task, long initialDelay, long period) {
+			this.task = task;
+			this.period = period;
+			this.plannedStart = System.nanoTime() + initialDelay;
+		}
+
+		@Override
+		public void run() {
+			long start = System.nanoTime();
+			long skew = Math.max(0, start - this.plannedStart);
+			try {
+				this.task.run();
+			} catch (RuntimeException | Error e) {
+				ComponentTaskScheduler.this.failures.incrementAndGet();
+				throw e;
+			} finally {
+				long end = System.nanoTime();
+				ComponentTaskScheduler.this.executions.incrementAndGet();
+				ComponentTaskScheduler.this.totalSkew.addAndGet(skew);
+				ComponentTaskScheduler.this.maxSkew.accumulate(skew);
+				ComponentTaskScheduler.this.totalExecutionTime.addAndGet(end - start);
+				this.plannedStart = this.period >= 0 ? this.plannedStart + this.period : end - this.period;
+			}
+		}
+	}
+}
@@ -27,7 +27,10 @@ import javax.annotation.Nonnull;
 
 import io.github.amyassist.amy.core.di.Configuration;
 import io.github.amyassist.amy.core.di.InternalServiceLocator;
+import io.github.amyassist.amy.core.di.TaskScheduler;
+import io.github.amyassist.amy.core.di.consumer.ServiceConsumerImpl;
 import io.github.amyassist.amy.core.di.context.provider.StaticProvider;
+import io.github.amyassist.amy.core.di.runtime.ServiceDescriptionImpl;
 import io.github.amyassist.amy.core.di.util.ConfigurationUtil;
 
 /**
@@ -51,6 +54,26 @@ public class ConfigurationImpl implements Configuration {
 		this.internalServiceLocator.registerContextProvider(key, staticProvider);
 	}
 
+	@Override
+	public void rebindContextProvider(String key, StaticProvider<?> staticProvider) {
+		this.internalServiceLocator.rebindContextProvider(key, staticProvider);
+	}
+
+	@Override
+	public void registerContextProvider(String namespace, String key, StaticProvider<?> staticProvider) {
+		this.internalServiceLocator.registerContextProvider(namespace, key, staticProvider);
+	}
+
+	@Override
+	public void rebindContextProvider(String namespace, String key, StaticProvider<?> staticProvider) {
+		this.internalServiceLocator.rebindContextProvider(namespace, key, staticProvider);
+	}
+
+	@Override
+	public void registerContextNamespace(@Nonnull ClassLoader classLoader, String namespace) {
+		this.internalServiceLocator.registerContextNamespace(classLoader, namespace);
+	}
+
 	@Override
 	public void register(@Nonnull Class<?> cls) {
 		ClassServiceProvider<?> classServiceProvider = ConfigurationUtil.getClassServiceProvider(cls);
@@ -64,4 +87,12 @@ public class ConfigurationImpl implements Configuration {
 		this.internalServiceLocator.register(serviceProvider);
 	}
 
+	@Override
+	@Nonnull
+	public TaskScheduler getTaskScheduler(@Nonnull Class<?> consumerClass) {
+		return this.internalServiceLocator
+				.getService(new ServiceConsumerImpl<>(consumerClass, new ServiceDescriptionImpl<>(TaskScheduler.class)))
+				.getService();
+	}
+
 }
@@ -35,6 +35,7 @@ import io.github.amyassist.amy.core.di.annotation.Context;
 public class ContextInjectionPoint extends InjectionPoint {
 
 	private String contextIdentifier;
+	private boolean optional;
 
 	/**
 	 * @return the contextProviderType
@@ -43,10 +44,19 @@ public class ContextInjectionPoint extends InjectionPoint {
 		return this.contextIdentifier;
 	}
 
+	/**
+	 * @return true if null is injected when there is no context provider
+	 * @see Context#optional()
+	 */
+	public boolean isOptional() {
+		return this.optional;
+	}
+
 	public ContextInjectionPoint(Field field) {
 		super(field);
 		Context context = field.getAnnotation(Context.class);
 		this.contextIdentifier = context.value();
+		this.optional = context.optional();
 	}
 
 }
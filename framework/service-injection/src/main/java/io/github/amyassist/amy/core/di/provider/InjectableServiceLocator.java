@@ -23,6 +23,8 @@
 
 package io.github.amyassist.amy.core.di.provider;
 
+import java.util.function.Supplier;
+
 import javax.annotation.Nonnull;
 
 import io.github.amyassist.amy.core.di.ServiceDescription;
@@ -61,6 +63,11 @@ class InjectableServiceLocator implements ServiceLocator {
 		return ServiceLocatorUtil.createAndInitialize(serviceClass, this.locator);
 	}
 
+	@Override
+	public <T> Supplier<T> factoryFor(@Nonnull Class<T> serviceClass) {
+		return ServiceLocatorUtil.factoryFor(serviceClass, this.locator);
+	}
+
 	@Override
 	public <T> T getService(Class<T> serviceType) {
 		return this.getService(new ServiceDescriptionImpl<>(serviceType)).getService();
@@ -23,25 +23,60 @@
 
 package io.github.amyassist.amy.core.di.provider;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.reflect.MethodUtils;
+
 import io.github.amyassist.amy.core.di.ServiceDescription;
 import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.consumer.ConsumerFactory;
 import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+import io.github.amyassist.amy.core.di.util.InjectionException;
 import io.github.amyassist.amy.core.di.util.Util;
 
 /**
- * A InjectionPoint is an abstraction of where an object is injected into an instance.
+ * A InjectionPoint is an abstraction of where an object is injected into an instance. This can be a field or a setter
+ * method, which is bound to a method handle when the InjectionPoint is created.
  * 
  * @author Leon Kiefer
  */
-class InjectionPoint {
-	private Field field;
-	private ServiceConsumer<?> serviceConsumer;
+public class InjectionPoint {
+	private static final ClassValue<List<InjectionPoint>> REFERENCES = new ClassValue<List<InjectionPoint>>() {
+		@Override
+		protected List<InjectionPoint> computeValue(Class<?> type) {
+			List<InjectionPoint> injectionPoints = new ArrayList<>();
+			for (Field field : FieldUtils.getFieldsWithAnnotation(type, Reference.class)) {
+				injectionPoints.add(new InjectionPoint(field));
+			}
+			// the methods of the class come before those of its super classes, so an overridden setter is only
+			// injected once through the overriding method
+			Set<String> signatures = new HashSet<>();
+			for (Method method : MethodUtils.getMethodsWithAnnotation(type, Reference.class, true, true)) {
+				String signature = method.getName() + Arrays.toString(method.getParameterTypes());
+				if (Modifier.isPrivate(method.getModifiers()) || signatures.add(signature)) {
+					injectionPoints.add(new InjectionPoint(method));
+				}
+			}
+			return Collections.unmodifiableList(injectionPoints);
+		}
+	};
+
+	private final Class<?> type;
+	private final MethodHandle injector;
+	private final ServiceConsumer<?> serviceConsumer;
 
 	/**
 	 * 
@@ -49,12 +84,41 @@ class InjectionPoint {
 	 *            the field of the class
 	 */
 	public InjectionPoint(Field field) {
-		this.field = field;
-		ServiceDescription<?> serviceDescription = Util.serviceDescriptionFor(this.field);
+		this.type = field.getType();
+		this.injector = Util.fieldSetterHandle(field);
+		ServiceDescription<?> serviceDescription = Util.serviceDescriptionFor(field);
 		serviceDescription.getAnnotations().removeIf(annotation -> annotation instanceof Reference);
 		this.serviceConsumer = ConsumerFactory.build(field.getDeclaringClass(), serviceDescription);
 	}
 
+	/**
+	 * 
+	 * @param method
+	 *            the setter method of the class
+	 * @throws IllegalArgumentException
+	 *             if the method is not a valid injection method
+	 * @see Util#isValidInjectionMethod(Method)
+	 */
+	public InjectionPoint(Method method) {
+		this.type = method.getParameterTypes()[0];
+		this.injector = Util.methodInjectorHandle(method);
+		ServiceDescription<?> serviceDescription = Util.serviceDescriptionFor(method);
+		serviceDescription.getAnnotations().removeIf(annotation -> annotation instanceof Reference);
+		this.serviceConsumer = ConsumerFactory.build(method.getDeclaringClass(), serviceDescription);
+	}
+
+	/**
+	 * Get the InjectionPoints of all fields and methods of the given class annotated with {@link Reference}. The
+	 * InjectionPoints are created once per class.
+	 * 
+	 * @param cls
+	 *            the class with the references
+	 * @return the injection points of the fields followed by the injection points of the methods
+	 */
+	public static List<InjectionPoint> referencesOf(@Nonnull Class<?> cls) {
+		return REFERENCES.get(cls);
+	}
+
 	/**
 	 * 
 	 * @return the Description of the Service required by this InjectionPoint
@@ -63,7 +127,27 @@ class InjectionPoint {
 		return this.serviceConsumer;
 	}
 
+	/**
+	 * Inject object into the instance. Checks if the type of object can be injected.
+	 * 
+	 * @param instance
+	 *            the instance to be modified
+	 * @param object
+	 *            the value which should be injected
+	 */
 	public void inject(@Nonnull Object instance, @Nullable Object object) {
-		Util.inject(instance, object, this.field);
+		if (object != null && !this.type.isAssignableFrom(object.getClass())) {
+			throw new IllegalArgumentException(
+					"the object doesn't have the correct type to be assigable to the given field. The object is of type "
+							+ object.getClass() + " and the field of " + this.type);
+		}
+
+		try {
+			this.injector.invokeExact(instance, object);
+		} catch (RuntimeException | Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new InjectionException(object, instance, e);
+		}
 	}
 }
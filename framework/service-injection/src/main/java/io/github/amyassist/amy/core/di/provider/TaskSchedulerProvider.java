@@ -0,0 +1,131 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di.provider;
+
+import java.util.Collections;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nonnull;
+
+import io.github.amyassist.amy.core.di.*;
+import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+import io.github.amyassist.amy.core.di.runtime.ServiceDescriptionImpl;
+import io.github.amyassist.amy.core.di.runtime.ServiceInstantiationDescriptionImpl;
+
+/**
+ * Provider for the TaskScheduler in the DI with the correct consumer class. All TaskSchedulers of this provider share
+ * one bounded pool, which size can be set with the system property {@value #POOL_SIZE_PROPERTY} and defaults to the
+ * number of available processors. Idle threads of the pool are terminated, so the pool does not hold threads if no
+ * tasks are scheduled.
+ * 
+ * @author Leon Kiefer
+ */
+public class TaskSchedulerProvider implements ServiceProvider<TaskScheduler> {
+	/**
+	 * The system property to set the number of threads of the shared pool
+	 */
+	public static final String POOL_SIZE_PROPERTY = "io.github.amyassist.amy.core.di.TaskScheduler.poolSize";
+	private static final long KEEP_ALIVE_SECONDS = 60;
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+
+	private final ScheduledThreadPoolExecutor executor;
+
+	/**
+	 * Create the provider with a pool of the size given by the system property {@value #POOL_SIZE_PROPERTY}
+	 */
+	public TaskSchedulerProvider() {
+		this(Integer.getInteger(POOL_SIZE_PROPERTY, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * @param poolSize
+	 *            the maximum number of threads of the shared pool
+	 */
+	public TaskSchedulerProvider(int poolSize) {
+		if (poolSize < 1)
+			throw new IllegalArgumentException("The pool size must be positive, but was " + poolSize);
+		this.executor = new ScheduledThreadPoolExecutor(poolSize, new SchedulerThreadFactory());
+		this.executor.setKeepAliveTime(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+		this.executor.allowCoreThreadTimeOut(true);
+		this.executor.setRemoveOnCancelPolicy(true);
+		this.executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+	}
+
+	@Override
+	@Nonnull
+	public ServiceDescription<TaskScheduler> getServiceDescription() {
+		return new ServiceDescriptionImpl<>(TaskScheduler.class);
+	}
+
+	@Override
+	public ServiceInstantiationDescription<TaskScheduler> getServiceInstantiationDescription(
+			@Nonnull ContextLocator locator, @Nonnull ServiceConsumer<TaskScheduler> serviceConsumer) {
+		return new ServiceInstantiationDescriptionImpl<>(this.getServiceDescription(),
+				Collections.singletonMap("consumerClass",
+						locator.getContextProvider("class").getContext(serviceConsumer)),
+				ComponentTaskScheduler.class);
+	}
+
+	@Override
+	@Nonnull
+	public TaskScheduler createService(@Nonnull SimpleServiceLocator locator,
+			@Nonnull ServiceInstantiationDescription<TaskScheduler> serviceInstantiationDescription) {
+		return new ComponentTaskScheduler(this.executor,
+				(Class<?>) serviceInstantiationDescription.getContext().get("consumerClass"));
+	}
+
+	@Override
+	public void dispose(@Nonnull TaskScheduler service,
+			@Nonnull ServiceInstantiationDescription<TaskScheduler> serviceInstantiationDescription) {
+		((ComponentTaskScheduler) service).dispose();
+	}
+
+	/**
+	 * Shut down the shared pool. Running executions get some time to complete before they are interrupted, all other
+	 * tasks are cancelled.
+	 */
+	public void shutdown() {
+		this.executor.shutdown();
+		try {
+			if (!this.executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				this.executor.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			this.executor.shutdownNow();
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static class SchedulerThreadFactory implements ThreadFactory {
+		private final AtomicInteger threadNumber = new AtomicInteger();
+
+		@Override
+		public Thread newThread(Runnable runnable) {
+			return new Thread(runnable, "task-scheduler-" + this.threadNumber.incrementAndGet());
+		}
+	}
+}
@@ -0,0 +1,171 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di.util;
+
+import java.lang.invoke.MethodHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Supplier;
+
+import javax.annotation.Nonnull;
+
+import io.github.amyassist.amy.core.di.ServiceLocator;
+import io.github.amyassist.amy.core.di.SimpleServiceLocator;
+import io.github.amyassist.amy.core.di.annotation.PostConstruct;
+import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+import io.github.amyassist.amy.core.di.provider.InjectionPoint;
+import io.github.amyassist.amy.core.di.provider.ServiceHandle;
+
+/**
+ * A reusable factory for initialized instances of a class. The class is checked, the injection points are looked up and
+ * the constructor and the post construct methods are bound to method handles once, when the factory is created. The
+ * dependencies of the constructor, the fields and the setter methods are resolved for each created instance, so a
+ * rebound or disposed Service is never injected. The instances created by this factory are not managed by the DI.
+ * 
+ * @author Leon Kiefer
+ * @param <T>
+ *            the type of the created instances
+ * @see ServiceLocator#factoryFor(Class)
+ */
+public class ServiceFactory<T> implements Supplier<T> {
+	@Nonnull
+	private final Class<T> cls;
+	@Nonnull
+	private final SimpleServiceLocator locator;
+	@Nonnull
+	private final MethodHandle constructor;
+	@Nonnull
+	private final ServiceConsumer<?>[] constructorParameters;
+	@Nonnull
+	private final List<InjectionPoint> injectionPoints;
+	@Nonnull
+	private final MethodHandle[] postConstructMethods;
+
+	/**
+	 * @param cls
+	 *            the class of the created instances
+	 * @param locator
+	 *            the locator used to resolve the dependencies of the class
+	 * @throws IllegalArgumentException
+	 *             if the given class can't be used as a Service
+	 */
+	public ServiceFactory(@Nonnull Class<T> cls, @Nonnull SimpleServiceLocator locator) {
+		if (!Util.isValidServiceClass(cls)) {
+			throw new IllegalArgumentException(
+					"There is a problem with the class " + cls.getName() + ". It can't be used as a Service");
+		}
+		this.cls = cls;
+		this.locator = locator;
+		this.constructor = Util.constructorHandle(cls);
+		this.constructorParameters = ServiceLocatorUtil.constructorConsumers(cls);
+		this.injectionPoints = InjectionPoint.referencesOf(cls);
+		this.postConstructMethods = Util.annotatedMethodHandles(cls, PostConstruct.class);
+	}
+
+	/**
+	 * Create a new instance, inject the dependencies and post-construct it.
+	 * 
+	 * @return the created instance
+	 * @see #create()
+	 */
+	@Override
+	public T get() {
+		return this.create().getService();
+	}
+
+	/**
+	 * Create a new instance, inject the dependencies and post-construct it.
+	 * 
+	 * @return the service handle of the created instance, which readiness completes when the stages returned by the
+	 *         post construct methods are completed
+	 */
+	public ServiceHandle<T> create() {
+		Object[] arguments = new Object[this.constructorParameters.length];
+		for (int i = 0; i < arguments.length; i++) {
+			arguments[i] = this.locator.getService(this.constructorParameters[i]).getService();
+		}
+
+		Object instance;
+		try {
+			instance = this.constructor.invokeExact(arguments);
+		} catch (Throwable e) {
+			throw propagate("the constructor of " + this.cls.getName() + " throw an exception", e);
+		}
+
+		for (InjectionPoint injectionPoint : this.injectionPoints) {
+			injectionPoint.inject(instance, this.locator.getService(injectionPoint.getServiceConsumer()).getService());
+		}
+
+		List<CompletableFuture<?>> stages = new ArrayList<>();
+		for (MethodHandle postConstructMethod : this.postConstructMethods) {
+			Object stage;
+			try {
+				stage = postConstructMethod.invokeExact(instance);
+			} catch (Throwable e) {
+				throw propagate("post construct method of " + this.cls.getName() + " throw an exception", e);
+			}
+			if (stage != null) {
+				stages.add(((CompletionStage<?>) stage).toCompletableFuture());
+			}
+		}
+		return new InitializedInstance<>(this.cls.cast(instance),
+				CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[stages.size()])));
+	}
+
+	private static RuntimeException propagate(String message, Throwable throwable) {
+		if (throwable instanceof Error) {
+			throw (Error) throwable;
+		}
+		if (throwable instanceof RuntimeException) {
+			return (RuntimeException) throwable;
+		}
+		return new IllegalArgumentException(message, throwable);
+	}
+
+	private static class InitializedInstance<T> implements ServiceHandle<T> {
+		@Nonnull
+		private final T instance;
+		@Nonnull
+		private final CompletionStage<Void> readiness;
+
+		InitializedInstance(@Nonnull T instance, @Nonnull CompletionStage<Void> readiness) {
+			this.instance = instance;
+			this.readiness = readiness;
+		}
+
+		@Override
+		@Nonnull
+		public T getService() {
+			return this.instance;
+		}
+
+		@Override
+		@Nonnull
+		public CompletionStage<Void> getReadiness() {
+			return this.readiness;
+		}
+	}
+}
@@ -23,17 +23,18 @@
 
 package io.github.amyassist.amy.core.di.util;
 
-import java.lang.reflect.Field;
+import java.lang.reflect.Parameter;
+import java.util.function.Supplier;
 
 import javax.annotation.Nonnull;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
-
 import io.github.amyassist.amy.core.di.ServiceDescription;
 import io.github.amyassist.amy.core.di.ServiceLocator;
 import io.github.amyassist.amy.core.di.SimpleServiceLocator;
 import io.github.amyassist.amy.core.di.annotation.Reference;
 import io.github.amyassist.amy.core.di.consumer.ConsumerFactory;
+import io.github.amyassist.amy.core.di.consumer.ServiceConsumer;
+import io.github.amyassist.amy.core.di.provider.InjectionPoint;
 
 /**
  * Implementation of operations using the SimpleServiceLocator.
@@ -54,21 +55,38 @@ public class ServiceLocatorUtil {
 	 * @see ServiceLocator#createAndInitialize(Class)
 	 */
 	public static <T> T createAndInitialize(@Nonnull Class<T> serviceClass, @Nonnull SimpleServiceLocator locator) {
-		if (!Util.isValidServiceClass(serviceClass)) {
-			throw new IllegalArgumentException(
-					"There is a problem with the class " + serviceClass.getName() + ". It can't be used as a Service");
-		}
-		T newInstance;
-		try {
-			newInstance = serviceClass.newInstance();
-		} catch (InstantiationException | IllegalAccessException e) {
-			throw new IllegalStateException(
-					"The constructor of " + serviceClass.getName() + " should have been checked", e);
-		}
-		inject(newInstance, locator);
-		Util.postConstruct(newInstance);
+		return new ServiceFactory<>(serviceClass, locator).get();
+	}
 
-		return newInstance;
+	/**
+	 *
+	 * @param <T>
+	 * @param serviceClass
+	 * @param locator
+	 * @return a factory for initialized instances of the given class
+	 * @see ServiceLocator#factoryFor(Class)
+	 */
+	public static <T> Supplier<T> factoryFor(@Nonnull Class<T> serviceClass, @Nonnull SimpleServiceLocator locator) {
+		return new ServiceFactory<>(serviceClass, locator);
+	}
+
+	/**
+	 * Get the service consumers of the constructor parameters of the given class.
+	 * 
+	 * @param cls
+	 *            the class with a valid constructor
+	 * @return the service consumers used to resolve the arguments for the constructor of the class
+	 * @see Util#getServiceConstructor(Class)
+	 */
+	public static ServiceConsumer<?>[] constructorConsumers(@Nonnull Class<?> cls) {
+		Parameter[] parameters = Util.getServiceConstructor(cls).getParameters();
+		ServiceConsumer<?>[] consumers = new ServiceConsumer<?>[parameters.length];
+		for (int i = 0; i < parameters.length; i++) {
+			ServiceDescription<?> serviceDescription = Util.serviceDescriptionFor(parameters[i]);
+			serviceDescription.getAnnotations().removeIf(annotation -> annotation instanceof Reference);
+			consumers[i] = ConsumerFactory.build(cls, serviceDescription);
+		}
+		return consumers;
 	}
 
 	/**
@@ -77,14 +95,9 @@ public class ServiceLocatorUtil {
 	 * @see ServiceLocator#inject(Object)
 	 */
 	public static void inject(@Nonnull Object instance, @Nonnull SimpleServiceLocator locator) {
-		Class<? extends Object> classOfInstance = instance.getClass();
-		Field[] dependencyFields = FieldUtils.getFieldsWithAnnotation(classOfInstance, Reference.class);
-		for (Field field : dependencyFields) {
-			ServiceDescription<?> serviceDescription = Util.serviceDescriptionFor(field);
-			serviceDescription.getAnnotations().removeIf(annotation -> annotation instanceof Reference);
-			Class<?> declaredClass = field.getDeclaringClass();
-			Object object = locator.getService(ConsumerFactory.build(declaredClass, serviceDescription)).getService();
-			Util.inject(instance, object, field);
+		for (InjectionPoint injectionPoint : InjectionPoint.referencesOf(instance.getClass())) {
+			Object object = locator.getService(injectionPoint.getServiceConsumer()).getService();
+			injectionPoint.inject(instance, object);
 		}
 	}
 }
@@ -24,15 +24,23 @@
 package io.github.amyassist.amy.core.di.util;
 
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 import javax.annotation.Nonnull;
-import javax.annotation.Nullable;
 
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.commons.lang3.reflect.MethodUtils;
@@ -55,7 +63,7 @@ public class Util {
 	}
 
 	/**
-	 * Checks if the given class can be used as a Service. There for it must be a not abstract class with a default
+	 * Checks if the given class can be used as a Service. There for it must be a not abstract class with a valid
 	 * constructor.
 	 * 
 	 * @param cls
@@ -75,9 +83,16 @@ public class Util {
 			}
 		}
 
+		Method[] dependencyMethods = MethodUtils.getMethodsWithAnnotation(cls, Reference.class, true, true);
+		for (Method m : dependencyMethods) {
+			if (!isValidInjectionMethod(m)) {
+				return false;
+			}
+		}
+
 		Method[] postConstructMethod = MethodUtils.getMethodsWithAnnotation(cls, PostConstruct.class, true, true);
 		for (Method m : postConstructMethod) {
-			if (!isValidAnnotatedMethod(m)) {
+			if (!isValidPostConstructMethod(m)) {
 				return false;
 			}
 		}
@@ -93,23 +108,40 @@ public class Util {
 	}
 
 	/**
-	 * check if default constructor exists and is accessible
+	 * check if exactly one public constructor exists and all of its parameters are annotated with {@link Reference}.
+	 * This is the case for the default constructor.
 	 * 
 	 * @param cls
 	 *            The class to check
-	 * @return Whether the default constructor is present.
+	 * @return Whether a valid constructor is present.
 	 */
 	public static boolean hasValidConstructors(@Nonnull Class<?> cls) {
-		if (cls.getConstructors().length != 1) {
+		Constructor<?>[] constructors = cls.getConstructors();
+		if (constructors.length != 1) {
 			return false;
 		}
 
-		try {
-			cls.getConstructor();
-			return true;
-		} catch (NoSuchMethodException e) {
-			return false;
+		for (Parameter parameter : constructors[0].getParameters()) {
+			if (!parameter.isAnnotationPresent(Reference.class)) {
+				return false;
+			}
 		}
+		return true;
+	}
+
+	/**
+	 * Get the constructor which is used to create instances of the given class.
+	 * 
+	 * @param cls
+	 *            the class with a valid constructor
+	 * @return the single public constructor of the class
+	 * @see #hasValidConstructors(Class)
+	 */
+	public static Constructor<?> getServiceConstructor(@Nonnull Class<?> cls) {
+		if (!hasValidConstructors(cls)) {
+			throw new IllegalStateException("The constructor of " + cls.getName() + " should have been checked");
+		}
+		return cls.getConstructors()[0];
 	}
 
 	/**
@@ -117,9 +149,21 @@ public class Util {
 	 * 
 	 * @param instance
 	 *            the instance to post construct
+	 * @return the stage which completes when all stages returned by the post construct methods are completed
 	 */
-	public static void postConstruct(@Nonnull Object instance) {
-		callAnnotatedMethods(instance, PostConstruct.class);
+	public static CompletionStage<Void> postConstruct(@Nonnull Object instance) {
+		Method[] methodsWithAnnotation = MethodUtils.getMethodsWithAnnotation(instance.getClass(), PostConstruct.class,
+				true, true);
+		assertValidAnnotatedMethods(methodsWithAnnotation, PostConstruct.class);
+
+		List<CompletableFuture<?>> stages = new ArrayList<>();
+		for (Method m : methodsWithAnnotation) {
+			Object result = invoke(instance, m);
+			if (result != null) {
+				stages.add(((CompletionStage<?>) result).toCompletableFuture());
+			}
+		}
+		return CompletableFuture.allOf(stages.toArray(new CompletableFuture<?>[stages.size()]));
 	}
 
 	/**
@@ -145,28 +189,102 @@ public class Util {
 			@Nonnull Class<? extends Annotation> annotationCls) {
 		Method[] methodsWithAnnotation = MethodUtils.getMethodsWithAnnotation(instance.getClass(), annotationCls, true,
 				true);
-		assertValidAnnotatedMethods(methodsWithAnnotation);
+		assertValidAnnotatedMethods(methodsWithAnnotation, annotationCls);
 
 		for (Method m : methodsWithAnnotation) {
+			invoke(instance, m);
+		}
+	}
+
+	private static Object invoke(@Nonnull Object instance, @Nonnull Method m) {
+		try {
+			m.setAccessible(true);
+			return m.invoke(instance);
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("tryed to invoke method " + m + " but got an error", e);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			throw new IllegalArgumentException("method " + m + " throw an exception", cause);
+		}
+	}
+
+	/**
+	 * Lookup the Methods annotated with the given annotation and bind them to method handles. The returned handles have
+	 * the type <code>(Object)Object</code> and return the stage returned by a post construct method or null for void
+	 * methods.
+	 *
+	 * @param cls
+	 *            the class of which to lookup the methods
+	 * @param annotationCls
+	 *            the class of the annotation
+	 * @return the method handles of the annotated methods in the order they must be called
+	 * @throws IllegalArgumentException
+	 *             if the annotated methods not valid
+	 */
+	public static MethodHandle[] annotatedMethodHandles(@Nonnull Class<?> cls,
+			@Nonnull Class<? extends Annotation> annotationCls) {
+		Method[] methodsWithAnnotation = MethodUtils.getMethodsWithAnnotation(cls, annotationCls, true, true);
+		assertValidAnnotatedMethods(methodsWithAnnotation, annotationCls);
+
+		MethodHandle[] handles = new MethodHandle[methodsWithAnnotation.length];
+		for (int i = 0; i < methodsWithAnnotation.length; i++) {
+			Method m = methodsWithAnnotation[i];
 			try {
 				m.setAccessible(true);
-				m.invoke(instance);
+				handles[i] = MethodHandles.lookup().unreflect(m).asType(MethodType.methodType(Object.class, Object.class));
 			} catch (IllegalAccessException e) {
-				throw new IllegalArgumentException("tryed to invoke method " + m + " but got an error", e);
-			} catch (InvocationTargetException e) {
-				Throwable cause = e.getCause();
-
-				if (cause instanceof RuntimeException) {
-					throw (RuntimeException) cause;
-				}
-				throw new IllegalArgumentException("method " + m + " throw an exception", cause);
+				throw new IllegalArgumentException("tryed to access method " + m + " but got an error", e);
 			}
 		}
+		return handles;
 	}
 
-	private static void assertValidAnnotatedMethods(@Nonnull Method[] methods) {
+	/**
+	 * Bind the constructor of the given class to a method handle, which takes all constructor arguments at once. The
+	 * returned handle has the type <code>(Object[])Object</code>.
+	 *
+	 * @param cls
+	 *            the class with a valid constructor
+	 * @return the method handle of the constructor
+	 * @see #getServiceConstructor(Class)
+	 */
+	public static MethodHandle constructorHandle(@Nonnull Class<?> cls) {
+		Constructor<?> constructor = getServiceConstructor(cls);
+		int parameterCount = constructor.getParameterCount();
+		try {
+			constructor.setAccessible(true);
+			return MethodHandles.lookup().unreflectConstructor(constructor)
+					.asType(MethodType.genericMethodType(parameterCount)).asSpreader(Object[].class, parameterCount);
+		} catch (IllegalAccessException e) {
+			throw new IllegalStateException("The constructor of " + cls.getName() + " should have been checked", e);
+		}
+	}
+
+	/**
+	 * Bind the given field to a setter method handle. The returned handle has the type <code>(Object,Object)void</code>.
+	 *
+	 * @param field
+	 *            the field of a class in which to inject
+	 * @return the method handle which sets the field
+	 */
+	public static MethodHandle fieldSetterHandle(@Nonnull Field field) {
+		try {
+			field.setAccessible(true);
+			return MethodHandles.lookup().unreflectSetter(field)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+		} catch (IllegalAccessException e) {
+			throw new IllegalArgumentException("tryed to access field " + field + " but got an error", e);
+		}
+	}
+
+	private static void assertValidAnnotatedMethods(@Nonnull Method[] methods,
+			@Nonnull Class<? extends Annotation> annotationCls) {
 		for (Method m : methods) {
-			if (!isValidAnnotatedMethod(m)) {
+			if (annotationCls == PostConstruct.class ? !isValidPostConstructMethod(m) : !isValidAnnotatedMethod(m)) {
 				throw new IllegalArgumentException(
 						"The method " + m + " in class " + m.getDeclaringClass() + " is not a valid annotated method");
 			}
@@ -187,26 +305,56 @@ public class Util {
 	}
 
 	/**
-	 * Inject object into field of instance. Checks if the type of object can be injected into the field.
+	 * Check if method is a valid post construct method. Post construct methods must not throw Exceptions, have return
+	 * type void or {@link CompletionStage} and take no arguments. The returned stage signals when the service is
+	 * ready.
 	 * 
-	 * @param instance
-	 *            the instance to be modified
-	 * @param object
-	 *            the value which should be injected into the field
-	 * @param field
-	 *            the field of the class in which to inject
+	 * @param method
+	 *            the method to check
+	 * @return true if the given method is a valid post construct method
+	 */
+	public static boolean isValidPostConstructMethod(@Nonnull Method method) {
+		return method.getExceptionTypes().length == 0 && !method.isVarArgs()
+				&& (method.getReturnType().equals(Void.TYPE)
+						|| CompletionStage.class.isAssignableFrom(method.getReturnType()))
+				&& method.getParameterTypes().length == 0;
+	}
+
+	/**
+	 * Check if method is a valid injection method. Injection methods must not be static, must not throw Exceptions,
+	 * have return type void and take exactly one argument.
+	 * 
+	 * @param method
+	 *            the method to check
+	 * @return true if the given method is a valid injection method
 	 */
-	public static void inject(@Nonnull Object instance, @Nullable Object object, @Nonnull Field field) {
-		if (object != null && !field.getType().isAssignableFrom(object.getClass())) {
+	public static boolean isValidInjectionMethod(@Nonnull Method method) {
+		return !Modifier.isStatic(method.getModifiers()) && method.getExceptionTypes().length == 0
+				&& !method.isVarArgs() && method.getReturnType().equals(Void.TYPE)
+				&& method.getParameterTypes().length == 1;
+	}
+
+	/**
+	 * Bind the given injection method to a method handle. The returned handle has the type
+	 * <code>(Object,Object)void</code>.
+	 * 
+	 * @param method
+	 *            the method of a class which takes the injected object
+	 * @return the method handle which calls the method
+	 * @throws IllegalArgumentException
+	 *             if the method is not a valid injection method
+	 */
+	public static MethodHandle methodInjectorHandle(@Nonnull Method method) {
+		if (!isValidInjectionMethod(method)) {
 			throw new IllegalArgumentException(
-					"the object doesn't have the correct type to be assigable to the given field. The object is of type "
-							+ object.getClass() + " and the field of " + field.getType());
+					"The method " + method + " in class " + method.getDeclaringClass() + " is not a valid injection method");
 		}
-
 		try {
-			FieldUtils.writeField(field, instance, object, true);
+			method.setAccessible(true);
+			return MethodHandles.lookup().unreflect(method)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
 		} catch (IllegalAccessException e) {
-			throw new InjectionException(object, instance, e);
+			throw new IllegalArgumentException("tryed to access method " + method + " but got an error", e);
 		}
 	}
 
@@ -221,4 +369,26 @@ public class Util {
 		return new ServiceDescriptionImpl<>(serviceType, new HashSet<>(Arrays.asList(annotations)));
 	}
 
+	/**
+	 * @param method
+	 *            the injection method from which the information are extracted
+	 * @return the ServiceDescription for the parameter of the given method
+	 */
+	public static ServiceDescription<?> serviceDescriptionFor(Method method) {
+		Class<?> serviceType = method.getParameterTypes()[0];
+		Annotation[] annotations = method.getAnnotations();
+		return new ServiceDescriptionImpl<>(serviceType, new HashSet<>(Arrays.asList(annotations)));
+	}
+
+	/**
+	 * @param parameter
+	 *            the constructor parameter from which the information are extracted
+	 * @return the ServiceDescription for the given parameter
+	 */
+	public static ServiceDescription<?> serviceDescriptionFor(Parameter parameter) {
+		Class<?> serviceType = parameter.getType();
+		Annotation[] annotations = parameter.getAnnotations();
+		return new ServiceDescriptionImpl<>(serviceType, new HashSet<>(Arrays.asList(annotations)));
+	}
+
 }
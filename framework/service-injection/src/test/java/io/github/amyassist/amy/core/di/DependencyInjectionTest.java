@@ -28,6 +28,15 @@ import static org.hamcrest.Matchers.*;
 import static org.junit.jupiter.api.Assertions.*;
 
 import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -36,8 +45,11 @@ import org.junit.jupiter.api.Test;
 import io.github.amyassist.amy.core.di.exception.ClassIsNotAServiceException;
 import io.github.amyassist.amy.core.di.exception.DuplicateServiceException;
 import io.github.amyassist.amy.core.di.exception.ServiceNotFoundException;
+import io.github.amyassist.amy.core.di.provider.ServiceHandle;
 import io.github.amyassist.amy.core.di.provider.ServiceProvider;
 import io.github.amyassist.amy.core.di.provider.SingletonServiceProvider;
+import io.github.amyassist.amy.core.di.runtime.ServiceDescriptionImpl;
+import io.github.amyassist.amy.core.di.util.ServiceFactory;
 
 /**
  * Test for DependencyInjection
@@ -89,6 +101,75 @@ class DependencyInjectionTest {
 		});
 	}
 
+	@Test
+	void testConstructorInjection() {
+		this.configuration.register(Service20.class);
+		Service20 service20 = this.serviceLocator.getService(Service20.class);
+		assertThat(service20.checkServices(), is(true));
+		assertThat(service20.getService1(), theInstance(this.serviceLocator.getService(Service1.class)));
+	}
+
+	@Test
+	void testConstructorInjectionCreateAndInitialize() {
+		Service20 service20 = this.serviceLocator.createAndInitialize(Service20.class);
+		assertThat(service20.checkServices(), is(true));
+		Service20 service20_2 = this.serviceLocator.factoryFor(Service20.class).get();
+		assertThat(service20_2.getService1(), theInstance(service20.getService1()));
+	}
+
+	@Test
+	void testCircularConstructorDependencies() {
+		this.configuration.register(Service21.class);
+		this.configuration.register(Service22.class);
+
+		assertTimeoutPreemptively(Duration.ofSeconds(1), () -> {
+			assertThrows(RuntimeException.class, () -> this.serviceLocator.getService(Service21.class));
+		});
+	}
+
+	@Test
+	void testSetterInjection() {
+		this.configuration.register(Service23.class);
+		Service23 service23 = this.serviceLocator.getService(Service23.class);
+		assertThat(service23.checkServices(), is(true));
+		assertThat(service23.getService3(), theInstance(this.serviceLocator.getService(Service3.class)));
+	}
+
+	@Test
+	void testSetterInjectionCreateAndInitialize() {
+		Service23 service23 = this.serviceLocator.createAndInitialize(Service23.class);
+		assertThat(service23.checkServices(), is(true));
+		Service23 service23_2 = new Service23();
+		this.serviceLocator.inject(service23_2);
+		assertThat(service23_2.getService3(), theInstance(service23.getService3()));
+	}
+
+	@Test
+	void testOverriddenSetterInjection() {
+		this.configuration.register(Service30.class);
+		Service30 service30 = this.serviceLocator.getService(Service30.class);
+		assertThat(service30.checkServices(), is(true));
+		assertThat(service30.injections, is(1));
+	}
+
+	@Test
+	void testInvalidSetterInjection() {
+		assertThrows(IllegalArgumentException.class, () -> this.configuration.register(Service24.class));
+	}
+
+	@Test
+	void testServiceShutdownOrder() {
+		this.configuration.register(Service29.class);
+		this.configuration.register(Service28.class);
+		Service28 service28 = this.serviceLocator.getService(Service28.class);
+
+		this.dependencyInjection.shutdown();
+
+		assertThat(service28.destroyed, is(true));
+		assertThat(service28.service29.destroyed, is(true));
+		assertThat(service28.dependencyDestroyedBefore, is(false));
+	}
+
 	@Test()
 	void testRegisterNotAService() {
 		String message = assertThrows(ClassIsNotAServiceException.class,
@@ -154,6 +235,34 @@ class DependencyInjectionTest {
 		assertThat(service18.setup, is(true));
 	}
 
+	@Test()
+	void testFactoryFor() {
+		Service2 s2_1 = this.serviceLocator.getService(Service2.class);
+		Supplier<Service2> factory = this.serviceLocator.factoryFor(Service2.class);
+		Service2 s2_2 = factory.get();
+		Service2 s2_3 = factory.get();
+		assertThat(s2_2, not(theInstance(s2_3)));
+		assertThat(s2_1, not(theInstance(s2_2)));
+		assertThat(s2_1.getService3(), theInstance(s2_2.getService3()));
+		assertThat(s2_2.getService3(), theInstance(s2_3.getService3()));
+	}
+
+	@Test()
+	void testFactoryForPostConstruct() {
+		Supplier<Service18> factory = this.serviceLocator.factoryFor(Service18.class);
+		assertThat(factory.get().setup, is(true));
+		assertThat(factory.get().setup, is(true));
+	}
+
+	@Test()
+	void testFactoryForIllegalClass() {
+		String message = assertThrows(IllegalArgumentException.class,
+				() -> this.serviceLocator.factoryFor(Service8.class)).getMessage();
+
+		assertThat(message, equalTo(
+				"There is a problem with the class " + Service8.class.getName() + ". It can't be used as a Service"));
+	}
+
 	@Test()
 	void testCreateNotAService() {
 		NotAService2 nas = this.serviceLocator.createAndInitialize(NotAService2.class);
@@ -218,4 +327,80 @@ class DependencyInjectionTest {
 		assertThat(service1, notNullValue());
 		assertThat(service1.init, is(1));
 	}
+
+	@Test
+	void testMemoize() {
+		this.configuration.register(Service25Impl.class);
+		Service25API service = this.serviceLocator.getService(Service25API.class);
+
+		assertThat(service.square(3), is(9));
+		assertThat(service.square(3), is(9));
+		assertThat(service.calls(), is(1));
+
+		assertThat(service.square(4), is(16));
+		assertThat(service.square(5), is(25));
+		assertThat(service.square(3), is(9));
+		assertThat(service.calls(), is(4));
+	}
+
+	@Test
+	void testMemoizeConcurrentCalls() throws InterruptedException, ExecutionException {
+		this.configuration.register(Service25Impl.class);
+		Service25API service = this.serviceLocator.getService(Service25API.class);
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Integer>> results = executor.invokeAll(Collections.nCopies(4, () -> service.slowSquare(7)));
+			for (Future<Integer> result : results) {
+				assertThat(result.get(), is(49));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertThat(service.calls(), is(1));
+	}
+
+	@Test
+	void testPostConstructReadiness() {
+		this.configuration.register(Service26.class);
+		ServiceHandle<Service26> handle = this.serviceLocator
+				.getService(new ServiceDescriptionImpl<>(Service26.class));
+
+		assertThat(handle.getReadiness().toCompletableFuture().isDone(), is(false));
+		handle.getService().ready.complete(null);
+		assertThat(handle.getReadiness().toCompletableFuture().isDone(), is(true));
+
+		ServiceHandle<Service1> readyHandle = this.serviceLocator
+				.getService(new ServiceDescriptionImpl<>(Service1.class));
+		assertThat(readyHandle.getReadiness().toCompletableFuture().isDone(), is(true));
+	}
+
+	@Test
+	void testFactoryReadiness() {
+		Supplier<Service26> factory = this.serviceLocator.factoryFor(Service26.class);
+		ServiceHandle<Service26> handle = ((ServiceFactory<Service26>) factory).create();
+
+		assertThat(handle.getReadiness().toCompletableFuture().isDone(), is(false));
+		handle.getService().ready.complete(null);
+		assertThat(handle.getReadiness().toCompletableFuture().isDone(), is(true));
+	}
+
+	@Test
+	void testTaskSchedulerShutdown() throws InterruptedException {
+		this.configuration.register(Service27.class);
+		Service27 service27 = this.serviceLocator.getService(Service27.class);
+
+		assertThat(service27.executions.await(1, TimeUnit.SECONDS), is(true));
+		assertThat(service27.taskScheduler.getPendingTaskCount(), is(1));
+		assertThat(service27.taskScheduler.getExecutionCount(), greaterThanOrEqualTo(2L));
+		assertThat(service27.taskScheduler.getFailureCount(), is(0L));
+
+		this.dependencyInjection.shutdown();
+
+		assertThat(service27.destroyed, is(true));
+		assertThat(service27.cancelledBeforeDestroy, is(false));
+		assertThat(service27.task.isCancelled(), is(true));
+		assertThrows(RejectedExecutionException.class,
+				() -> service27.taskScheduler.schedule(() -> {}, 0, TimeUnit.MILLISECONDS));
+	}
 }
@@ -0,0 +1,59 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.amyassist.amy.core.di.annotation.Service;
+
+/**
+ * Test Service for DI with memoized methods
+ * 
+ * @author Leon Kiefer
+ */
+@Service
+public class Service25Impl implements Service25API {
+	private final AtomicInteger calls = new AtomicInteger();
+
+	@Override
+	public int square(int a) {
+		this.calls.incrementAndGet();
+		return a * a;
+	}
+
+	@Override
+	public int slowSquare(int a) {
+		try {
+			Thread.sleep(100);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		return this.square(a);
+	}
+
+	@Override
+	public int calls() {
+		return this.calls.get();
+	}
+}
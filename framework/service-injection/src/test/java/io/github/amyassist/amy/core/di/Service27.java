@@ -0,0 +1,60 @@
+/*
+ * This source file is part of the Amy open source project.
+ * For more information see github.com/AmyAssist
+ * 
+ * Copyright (c) 2018 the Amy project authors.
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at 
+ * 
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ * For more information see notice.md
+ */
+
+package io.github.amyassist.amy.core.di;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import io.github.amyassist.amy.core.di.annotation.PostConstruct;
+import io.github.amyassist.amy.core.di.annotation.PreDestroy;
+import io.github.amyassist.amy.core.di.annotation.Reference;
+import io.github.amyassist.amy.core.di.annotation.Service;
+
+/**
+ * Test Service for DI which uses the TaskScheduler
+ * 
+ * @author Leon Kiefer
+ */
+@Service
+public class Service27 {
+	@Reference
+	public TaskScheduler taskScheduler;
+
+	public final CountDownLatch executions = new CountDownLatch(3);
+	public ScheduledFuture<?> task;
+	public boolean destroyed = false;
+	public boolean cancelledBeforeDestroy = false;
+
+	@PostConstruct
+	private void setup() {
+		this.task = this.taskScheduler.scheduleAtFixedRate(this.executions::countDown, 0, 10, TimeUnit.MILLISECONDS);
+	}
+
+	@PreDestroy
+	private void destroy() {
+		this.destroyed = true;
+		this.cancelledBeforeDestroy = this.task.isCancelled();
+	}
+}
@@ -24,6 +24,7 @@
 package io.github.amyassist.amy.core.di.context.provider;
 
 import io.github.amyassist.amy.core.di.annotation.Context;
+import io.github.amyassist.amy.core.di.annotation.PreDestroy;
 import io.github.amyassist.amy.core.di.annotation.Service;
 
 /**
@@ -36,7 +37,18 @@ public class ServiceWithAnnotationContext {
 	@Context("annotation")
 	private String annotationValue;
 
+	private boolean disposed;
+
 	public String getValue() {
 		return this.annotationValue;
 	}
+
+	@PreDestroy
+	private void dispose() {
+		this.disposed = true;
+	}
+
+	public boolean isDisposed() {
+		return this.disposed;
+	}
 }
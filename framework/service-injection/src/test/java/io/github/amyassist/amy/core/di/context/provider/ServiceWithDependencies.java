@@ -40,6 +40,10 @@ public class ServiceWithDependencies {
 	@Reference
 	private ServiceWithAnnotationContext service2;
 
+	public ServiceWithAnnotationContext getService1() {
+		return this.service1;
+	}
+
 	public String getValueOfService1() {
 		return this.service1.getValue();
 	}
@@ -23,12 +23,15 @@
 
 package io.github.amyassist.amy.core.di.context.provider;
 
+import java.util.function.Supplier;
+
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import io.github.amyassist.amy.core.di.DependencyInjection;
 import static org.hamcrest.MatcherAssert.*;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Test for the StaticContext provider in combination with annotations of the consumer
@@ -58,4 +61,117 @@ public class TestStaticProvider {
 		assertThat(service.getValueOfService1(), is("1"));
 		assertThat(service.getValueOfService2(), is("2"));
 	}
+
+	@Test
+	void testRebindContextProvider() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithAnnotationContext.class);
+		this.dependencyInjection.getConfiguration().registerContextProvider("annotation", consumer -> "a");
+
+		ServiceWithAnnotationContext service = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithAnnotationContext.class);
+		assertThat(service.getValue(), is("a"));
+
+		this.dependencyInjection.getConfiguration().rebindContextProvider("annotation", consumer -> "a");
+		assertThat(this.dependencyInjection.getServiceLocator().getService(ServiceWithAnnotationContext.class),
+				is(theInstance(service)));
+
+		this.dependencyInjection.getConfiguration().rebindContextProvider("annotation", consumer -> "b");
+		ServiceWithAnnotationContext rebound = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithAnnotationContext.class);
+		assertThat(rebound, not(theInstance(service)));
+		assertThat(rebound.getValue(), is("b"));
+	}
+
+	@Test
+	void testRebindRecreatesDependents() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithAnnotationContext.class);
+		this.dependencyInjection.getConfiguration().register(ServiceWithDependencies.class);
+		this.dependencyInjection.getConfiguration().registerContextProvider("annotation",
+				consumer -> consumer.getServiceDescription().getAnnotations().stream()
+						.filter(annotation -> annotation instanceof AnnotatoinWithValue).findFirst()
+						.map(annotation -> ((AnnotatoinWithValue) annotation).value()).orElse("none"));
+
+		ServiceWithDependencies dependent = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithDependencies.class);
+		ServiceWithAnnotationContext service = dependent.getService1();
+		ServiceWithAnnotationContext standalone = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithAnnotationContext.class);
+		assertThat(standalone, not(theInstance(service)));
+		assertThat(service.getValue(), is("1"));
+
+		this.dependencyInjection.getConfiguration().rebindContextProvider("annotation", consumer -> "b");
+		ServiceWithDependencies recreated = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithDependencies.class);
+		assertThat(recreated, not(theInstance(dependent)));
+		assertThat(recreated.getValueOfService1(), is("b"));
+		assertThat(recreated.getValueOfService2(), is("b"));
+		assertThat(service.isDisposed(), is(true));
+		assertThat(standalone.isDisposed(), is(true));
+		assertThat(recreated.getService1().isDisposed(), is(false));
+
+		this.dependencyInjection.shutdown();
+		assertThat(recreated.getService1().isDisposed(), is(true));
+	}
+
+	@Test
+	void testFactoryResolvesReboundServices() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithAnnotationContext.class);
+		this.dependencyInjection.getConfiguration().registerContextProvider("annotation", consumer -> "a");
+
+		Supplier<ServiceWithDependencies> factory = this.dependencyInjection.getServiceLocator()
+				.factoryFor(ServiceWithDependencies.class);
+		ServiceWithDependencies first = factory.get();
+		assertThat(first.getValueOfService1(), is("a"));
+
+		this.dependencyInjection.getConfiguration().rebindContextProvider("annotation", consumer -> "b");
+		ServiceWithDependencies second = factory.get();
+		assertThat(second.getValueOfService1(), is("b"));
+		assertThat(second.getService1().isDisposed(), is(false));
+	}
+
+	@Test
+	void testNamespacedContextProvider() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithAnnotationContext.class);
+		this.dependencyInjection.getConfiguration().registerContextProvider("annotation", consumer -> "global");
+		this.dependencyInjection.getConfiguration().registerContextProvider("other", "annotation",
+				consumer -> "other");
+		this.dependencyInjection.getConfiguration().registerContextProvider("namespace", "annotation",
+				consumer -> "namespace");
+		this.dependencyInjection.getConfiguration()
+				.registerContextNamespace(ServiceWithAnnotationContext.class.getClassLoader(), "namespace");
+
+		ServiceWithAnnotationContext service = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithAnnotationContext.class);
+		assertThat(service.getValue(), is("namespace"));
+
+		this.dependencyInjection.getConfiguration().rebindContextProvider("namespace", "annotation",
+				consumer -> "rebound");
+		assertThat(this.dependencyInjection.getServiceLocator().getService(ServiceWithAnnotationContext.class)
+				.getValue(), is("rebound"));
+	}
+
+	@Test
+	void testNamespacedContextProviderAsGlobalFallback() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithAnnotationContext.class);
+		this.dependencyInjection.getConfiguration().registerContextProvider("namespace", "annotation",
+				consumer -> "namespace");
+
+		ServiceWithAnnotationContext service = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithAnnotationContext.class);
+		assertThat(service.getValue(), is("namespace"));
+
+		this.dependencyInjection.getConfiguration().registerContextProvider("other", "annotation",
+				consumer -> "other");
+		assertThrows(IllegalStateException.class,
+				() -> this.dependencyInjection.getServiceLocator().getService(ServiceWithAnnotationContext.class));
+	}
+
+	@Test
+	void testOptionalContext() {
+		this.dependencyInjection.getConfiguration().register(ServiceWithOptionalContext.class);
+
+		ServiceWithOptionalContext service = this.dependencyInjection.getServiceLocator()
+				.getService(ServiceWithOptionalContext.class);
+		assertThat(service.getValue(), nullValue());
+	}
 }
@@ -29,7 +29,6 @@ import static org.junit.jupiter.api.Assertions.*;
 
 import java.util.stream.Stream;
 
-import org.apache.commons.lang3.reflect.FieldUtils;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -39,6 +38,9 @@ import io.github.amyassist.amy.core.di.NotAService;
 import io.github.amyassist.amy.core.di.Service1;
 import io.github.amyassist.amy.core.di.Service12;
 import io.github.amyassist.amy.core.di.Service19;
+import io.github.amyassist.amy.core.di.Service20;
+import io.github.amyassist.amy.core.di.Service23;
+import io.github.amyassist.amy.core.di.Service24;
 import io.github.amyassist.amy.core.di.Service2;
 import io.github.amyassist.amy.core.di.Service3;
 import io.github.amyassist.amy.core.di.Service4;
@@ -47,6 +49,7 @@ import io.github.amyassist.amy.core.di.Service7API;
 import io.github.amyassist.amy.core.di.Service8;
 import io.github.amyassist.amy.core.di.ServiceWithConstructor;
 import io.github.amyassist.amy.core.di.ServiceWithPrivateConstructor;
+import io.github.amyassist.amy.core.di.provider.InjectionPoint;
 
 /**
  * Tests for the DI Util
@@ -57,14 +60,14 @@ class UtilTest {
 
 	@ParameterizedTest
 	@ValueSource(classes = { Service1.class, Service2.class, Service3.class, Service4.class, Service5.class,
-			Service12.class })
+			Service12.class, Service20.class, Service23.class })
 	void testIsValidServiceClassTrue(Class<?> testClass) {
 		assertThat(Util.isValidServiceClass(testClass), is(true));
 	}
 
 	@ParameterizedTest
 	@ValueSource(classes = { ServiceWithConstructor.class, WrongAnnotationUse.class, Service8.class, Service7API.class,
-			NotAService.class, Service19.class })
+			NotAService.class, Service19.class, Service24.class })
 	void testIsValidServiceClassFalse(Class<?> testClass) {
 		assertThat(Util.isValidServiceClass(testClass), is(false));
 	}
@@ -93,10 +96,12 @@ class UtilTest {
 
 	@Test
 	void testInjectException() {
-		assertThrows(IllegalArgumentException.class,
-				() -> Util.inject(new Service2(), new Object(), FieldUtils.getField(Service2.class, "service1", true)));
+		InjectionPoint injectionPoint = InjectionPoint.referencesOf(Service2.class).stream().filter(
+				point -> point.getServiceConsumer().getServiceDescription().getServiceType().equals(Service1.class))
+				.findAny().get();
+		assertThrows(IllegalArgumentException.class, () -> injectionPoint.inject(new Service2(), new Object()));
 
-		Util.inject(new Service2(), null, FieldUtils.getField(Service2.class, "service1", true));
+		injectionPoint.inject(new Service2(), null);
 	}
 
 }
@@ -0,0 +1,321 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_service_manager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Local cache for the adapter jars of TOSCA Applications. The metadata file of an artifact is stored under the hash of
+ * the CSAR id and the artifact URL and contains the ETag, the Last-Modified date and the SHA-256 hash of the current
+ * jar. The jar itself is stored under the artifact hash and its own SHA-256 hash, so a jar file is never replaced with
+ * different content while another JVM uses it. Cached jars are verified against the hash, revalidated with a
+ * conditional request and reused across restarts if they are not modified. The verified hash is stored next to the jar
+ * together with the size and the modification time of the jar, so the jar is only hashed again if one of them changed.
+ * A jar which fails the verification is moved aside for inspection. After a successful download the jars of older
+ * versions of the artifact are deleted. All files are written to a temporary file first and then renamed, the metadata
+ * after the jar, so multiple JVMs on one host can share the cache.
+ * 
+ * @author Leon Kiefer
+ */
+class AdapterCache {
+	private static final String ETAG = "etag";
+	private static final String LAST_MODIFIED = "lastModified";
+	private static final String SHA_256 = "sha256";
+	private static final String SIZE = "size";
+	private static final String MODIFIED = "modified";
+	private static final String VERIFIED_SUFFIX = ".sha256";
+	private static final String CORRUPTED_SUFFIX = ".corrupted";
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final Path basePath;
+	private final Client client;
+
+	/**
+	 * @param basePath
+	 *            the directory of the cache
+	 * @param client
+	 *            the shared client used to download the jars
+	 */
+	AdapterCache(Path basePath, Client client) {
+		this.basePath = basePath;
+		this.client = client;
+	}
+
+	/**
+	 * Get the adapter jar from the cache or download it, if it is not cached or was modified.
+	 * 
+	 * @param csarId
+	 *            the id of the CSAR the artifact belongs to
+	 * @param url
+	 *            the URL of the artifact
+	 * @return the path of the cached jar
+	 */
+	Path get(String csarId, String url) {
+		String key = hex(sha256().digest((csarId + "|" + url).getBytes(StandardCharsets.UTF_8)));
+		Path metadataFile = this.basePath.resolve(key + ".properties");
+		Properties metadata = this.readValidMetadata(key, metadataFile);
+
+		Invocation.Builder request = this.client.target(url).request(MediaType.APPLICATION_OCTET_STREAM_TYPE);
+		if (metadata != null && metadata.containsKey(ETAG)) {
+			request.header(HttpHeaders.IF_NONE_MATCH, metadata.getProperty(ETAG));
+		} else if (metadata != null && metadata.containsKey(LAST_MODIFIED)) {
+			request.header(HttpHeaders.IF_MODIFIED_SINCE, metadata.getProperty(LAST_MODIFIED));
+		}
+
+		Response response = request.get();
+		try {
+			if (response.getStatus() == Response.Status.NOT_MODIFIED.getStatusCode() && metadata != null) {
+				Path jar = this.jar(key, metadata.getProperty(SHA_256));
+				this.logger.debug("Using cached adapter {} for {}", jar, url);
+				return jar;
+			}
+			if (response.getStatus() != Response.Status.OK.getStatusCode()) {
+				throw new IllegalStateException("Could not download " + url + ", status " + response.getStatus());
+			}
+
+			String hash;
+			try (InputStream in = response.readEntity(InputStream.class)) {
+				hash = this.writeJar(key, in);
+			}
+			Path jar = this.jar(key, hash);
+			this.storeVerified(jar, hash);
+			Properties newMetadata = new Properties();
+			newMetadata.setProperty(SHA_256, hash);
+			String etag = response.getHeaderString(HttpHeaders.ETAG);
+			if (etag != null) {
+				newMetadata.setProperty(ETAG, etag);
+			}
+			String lastModified = response.getHeaderString(HttpHeaders.LAST_MODIFIED);
+			if (lastModified != null) {
+				newMetadata.setProperty(LAST_MODIFIED, lastModified);
+			}
+			this.writeProperties(metadataFile, newMetadata);
+			this.logger.info("Downloaded adapter {} for {}", jar, url);
+			this.pruneSuperseded(key, jar);
+			return jar;
+		} catch (IOException e) {
+			throw new IllegalStateException("Could not download " + url, e);
+		} finally {
+			response.close();
+		}
+	}
+
+	private Path jar(String key, String hash) {
+		return this.basePath.resolve(key + "-" + hash + ".jar");
+	}
+
+	/**
+	 * @return the metadata of the cached jar or null if the jar is not cached or does not match the stored hash
+	 */
+	private Properties readValidMetadata(String key, Path metadataFile) {
+		if (!Files.isRegularFile(metadataFile)) {
+			return null;
+		}
+		Properties metadata = new Properties();
+		try (InputStream in = Files.newInputStream(metadataFile)) {
+			metadata.load(in);
+		} catch (IOException e) {
+			return null;
+		}
+		if (metadata.getProperty(SHA_256) == null) {
+			return null;
+		}
+		Path jar = this.jar(key, metadata.getProperty(SHA_256));
+		if (!Files.isRegularFile(jar)) {
+			return null;
+		}
+		return this.verify(jar, metadata.getProperty(SHA_256)) ? metadata : null;
+	}
+
+	/**
+	 * Verify the jar against the hash. The jar is only hashed if its size or modification time differ from the ones
+	 * stored with the last verified hash. A corrupted jar is moved aside, because the versioned file is only written if
+	 * it does not exist.
+	 * 
+	 * @return true if the jar matches the hash
+	 */
+	private boolean verify(Path jar, String hash) {
+		Path verifiedFile = verifiedFile(jar);
+		try {
+			if (Files.isRegularFile(verifiedFile)) {
+				Properties verified = new Properties();
+				try (InputStream in = Files.newInputStream(verifiedFile)) {
+					verified.load(in);
+				}
+				if (hash.equals(verified.getProperty(SHA_256))
+						&& String.valueOf(Files.size(jar)).equals(verified.getProperty(SIZE))
+						&& String.valueOf(Files.getLastModifiedTime(jar).toMillis())
+								.equals(verified.getProperty(MODIFIED))) {
+					return true;
+				}
+			}
+		} catch (IOException e) {
+			return false;
+		}
+
+		MessageDigest digest = sha256();
+		try (InputStream in = new DigestInputStream(Files.newInputStream(jar), digest)) {
+			byte[] buffer = new byte[8192];
+			while (in.read(buffer) != -1) {
+				// only compute the digest
+			}
+		} catch (IOException e) {
+			return false;
+		}
+		if (!hex(digest.digest()).equals(hash)) {
+			this.logger.warn("Cached adapter {} is corrupted", jar);
+			try {
+				Files.deleteIfExists(verifiedFile);
+				move(jar, jar.resolveSibling(jar.getFileName() + CORRUPTED_SUFFIX));
+			} catch (IOException e) {
+				this.logger.warn("Could not move the corrupted adapter {} aside", jar, e);
+			}
+			return false;
+		}
+
+		this.storeVerified(jar, hash);
+		return true;
+	}
+
+	/**
+	 * Store the verified hash next to the jar together with the size and the modification time of the jar.
+	 */
+	private void storeVerified(Path jar, String hash) {
+		try {
+			Properties verified = new Properties();
+			verified.setProperty(SHA_256, hash);
+			verified.setProperty(SIZE, String.valueOf(Files.size(jar)));
+			verified.setProperty(MODIFIED, String.valueOf(Files.getLastModifiedTime(jar).toMillis()));
+			this.writeProperties(verifiedFile(jar), verified);
+		} catch (IOException e) {
+			this.logger.debug("Could not store the verified hash of {}", jar, e);
+		}
+	}
+
+	private static Path verifiedFile(Path jar) {
+		return jar.resolveSibling(jar.getFileName() + VERIFIED_SUFFIX);
+	}
+
+	/**
+	 * Delete the jars of older versions of the artifact and their verified hashes. A jar which is still opened by
+	 * another JVM may not be deletable on some platforms, it is then deleted after a later download.
+	 */
+	private void pruneSuperseded(String key, Path current) {
+		try (DirectoryStream<Path> jars = Files.newDirectoryStream(this.basePath, key + "-*.jar")) {
+			for (Path jar : jars) {
+				if (jar.getFileName().equals(current.getFileName())) {
+					continue;
+				}
+				try {
+					Files.deleteIfExists(verifiedFile(jar));
+					Files.deleteIfExists(jar);
+					this.logger.debug("Deleted superseded adapter {}", jar);
+				} catch (IOException e) {
+					this.logger.debug("Could not delete superseded adapter {}", jar, e);
+				}
+			}
+		} catch (IOException e) {
+			this.logger.warn("Could not prune the superseded versions of {}", current, e);
+		}
+	}
+
+	private void writeProperties(Path file, Properties properties) throws IOException {
+		Path tempFile = Files.createTempFile(this.basePath, file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(tempFile)) {
+				properties.store(out, null);
+			}
+			move(tempFile, file);
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Write the jar to a temporary file and rename it to its versioned file name. If the file already exists, it has
+	 * the same content and is kept.
+	 * 
+	 * @return the SHA-256 hash of the jar
+	 */
+	private String writeJar(String key, InputStream in) throws IOException {
+		Path tempFile = Files.createTempFile(this.basePath, key, ".tmp");
+		try {
+			MessageDigest digest = sha256();
+			Files.copy(new DigestInputStream(in, digest), tempFile, StandardCopyOption.REPLACE_EXISTING);
+			String hash = hex(digest.digest());
+			Path jar = this.jar(key, hash);
+			if (!Files.isRegularFile(jar)) {
+				move(tempFile, jar);
+			}
+			return hash;
+		} finally {
+			Files.deleteIfExists(tempFile);
+		}
+	}
+
+	/**
+	 * Replace the target with the source, atomically if the file system supports it.
+	 */
+	static void move(Path source, Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+
+	private static MessageDigest sha256() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static String hex(byte[] bytes) {
+		char[] chars = new char[bytes.length * 2];
+		for (int i = 0; i < bytes.length; i++) {
+			chars[2 * i] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+			chars[2 * i + 1] = HEX_DIGITS[bytes[i] & 0xf];
+		}
+		return new String(chars);
+	}
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2019 Leon Kiefer
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.github.legion2.tosca_service_manager;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+
+import org.opentosca.container.client.ContainerClient;
+import org.opentosca.container.client.model.Application;
+import org.opentosca.container.client.model.ApplicationInstance;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.github.amyassist.amy.core.di.Configuration;
+import io.github.legion2.tosca_service_manager.model.InputProperty;
+import io.github.legion2.tosca_service_manager.model.TOSCABinding;
+
+/**
+ * Polls the boundary definition properties of the bound Application Instances. If a value changed, for example because
+ * a TOSCA Service was provisioned again on another host, the context provider of the property is rebound, so the
+ * services using this context and their dependents are recreated with the new value. This runs on the TaskScheduler of
+ * the dependency injection and never blocks the consumers of the services.
+ * 
+ * @author Leon Kiefer
+ */
+class BindingRefresher implements Runnable {
+	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
+
+	private final ContainerClient containerClient;
+	private final Configuration configuration;
+	private final List<TOSCABinding> bindings;
+	private final Map<String, Map<String, String>> values = new HashMap<>();
+
+	/**
+	 * @param containerClient
+	 *            the client used to poll the Application Instances
+	 * @param configuration
+	 *            the configuration in which the context providers are rebound
+	 * @param bindings
+	 *            the bindings with the currently registered properties
+	 */
+	BindingRefresher(ContainerClient containerClient, Configuration configuration, List<TOSCABinding> bindings) {
+		this.containerClient = containerClient;
+		this.configuration = configuration;
+		this.bindings = bindings;
+		for (TOSCABinding binding : bindings) {
+			Map<String, String> properties = new HashMap<>();
+			for (InputProperty property : Optional.ofNullable(binding.properties).orElse(Collections.emptyList())) {
+				properties.put(property.key, property.value);
+			}
+			this.values.put(binding.id, properties);
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			Map<String, Application> applications = new HashMap<>();
+			for (Application application : this.containerClient.getApplications()) {
+				applications.put(application.getId(), application);
+			}
+
+			for (TOSCABinding binding : this.bindings) {
+				Application application = applications.get(binding.id);
+				if (application == null) {
+					this.logger.warn("The Application {} is not available anymore", binding.id);
+					continue;
+				}
+				Optional<ApplicationInstance> applicationInstance = this.containerClient
+						.getApplicationInstance(application, binding.instanceId);
+				if (!applicationInstance.isPresent()) {
+					this.logger.warn("The Application Instance {} of {} is not available anymore", binding.instanceId,
+							binding.id);
+					continue;
+				}
+				for (Entry<String, String> property : applicationInstance.get().getProperties().entrySet()) {
+					this.refresh(binding.id, property.getKey(), property.getValue());
+				}
+			}
+		} catch (RuntimeException e) {
+			// the next run is not scheduled if an exception is thrown
+			this.logger.warn("Could not refresh the boundary definition properties", e);
+		}
+	}
+
+	private void refresh(String namespace, String key, String value) {
+		Map<String, String> properties = this.values.get(namespace);
+		if (Objects.equals(properties.get(key), value))
+			return;
+		this.logger.info("The boundary definition property {} of {} changed from {} to {}", key, namespace,
+				properties.get(key), value);
+		properties.put(key, value);
+		this.configuration.rebindContextProvider(namespace, key, consumer -> value);
+	}
+}
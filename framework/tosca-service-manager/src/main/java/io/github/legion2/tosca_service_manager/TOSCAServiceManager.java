@@ -16,26 +16,36 @@
 
 package io.github.legion2.tosca_service_manager;
 
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.*;
 import java.util.Map.Entry;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.core.MediaType;
-import javax.ws.rs.core.Response;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
 
 import org.opentosca.container.client.ContainerClient;
@@ -49,6 +59,9 @@ import com.google.auto.service.AutoService;
 
 import io.github.amyassist.amy.core.di.Configuration;
 import io.github.amyassist.amy.core.di.ServiceProviderLoader;
+import io.github.legion2.tosca_service_manager.model.InputProperty;
+import io.github.legion2.tosca_service_manager.model.TOSCABinding;
+import io.github.legion2.tosca_service_manager.model.TOSCABindings;
 import io.github.legion2.tosca_service_manager.model.TOSCAService;
 import io.github.legion2.tosca_service_manager.model.TOSCAServices;
 
@@ -64,6 +77,9 @@ public class TOSCAServiceManager implements ServiceProviderLoader {
 	private static final String DEFAULT_CONFIGURATION_FILE_PATH = "tosca-service-manager.properties";
 	private static final String DEFAULT_DEPLYMENT_DESCRIPTOR_PATH = "TOSCAServices.xml";
 	private static final String DEFAULT_MANAGER_ADAPTER_BASEPATH = ".tosca-adapters";
+	private static final int DEFAULT_PROVISIONING_PARALLELISM = 4;
+	private static final long DEFAULT_PROVISIONING_TIMEOUT = 600;
+	private static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
 
 	private final Logger logger = LoggerFactory.getLogger(this.getClass().getName());
 
@@ -80,28 +96,250 @@ public class TOSCAServiceManager implements ServiceProviderLoader {
 		this.adapterBasePath = Paths
 				.get(properties.getProperty("manager.adapter.basepath", DEFAULT_MANAGER_ADAPTER_BASEPATH));
 
-		String containerHost = properties.getProperty("tosca.container.host");
-		Integer port = Integer.parseInt(properties.getProperty("tosca.container.port"));
-		this.containerClient = new ContainerClientBuilder().withHostname(containerHost).withPort(port).build();
-
-		this.setupArtifactDirectory();
 		List<TOSCAService> requiredApplications = this.readTOSCAServiceDeploymentDescription(
 				properties.getProperty("manager.servcies.file", DEFAULT_DEPLYMENT_DESCRIPTOR_PATH));
 
+		String bindingsFile = properties.getProperty("manager.bindings.file");
+		boolean offline = Boolean.parseBoolean(properties.getProperty("manager.offline"));
+		List<TOSCABinding> bindings;
+		if (offline) {
+			if (bindingsFile == null) {
+				throw new IllegalStateException("Offline mode requires the manager.bindings.file property");
+			}
+			bindings = this.readBindings(Paths.get(bindingsFile), requiredApplications);
+			if (Boolean.parseBoolean(properties.getProperty("manager.offline.revalidate"))) {
+				this.revalidateInBackground(properties, bindings, Paths.get(bindingsFile));
+			}
+		} else {
+			bindings = this.resolveBindings(properties, requiredApplications);
+			if (bindingsFile != null) {
+				this.writeBindings(Paths.get(bindingsFile), bindings);
+			}
+		}
+
+		Set<ClassLoader> classLoaders = this.registerBindings(configuration, bindings);
+
+		long refreshInterval = Long.parseLong(properties.getProperty("manager.refresh.interval", "0"));
+		if (refreshInterval > 0 && !offline) {
+			this.startRefresher(configuration, bindings, refreshInterval);
+		}
+		return classLoaders;
+	}
+
+	/**
+	 * Poll the bound Application Instances every {@code manager.refresh.interval} seconds and rebind the context
+	 * providers of changed boundary definition properties. The polling runs on the TaskScheduler of the dependency
+	 * injection, so it is cancelled on shutdown.
+	 * 
+	 * @see BindingRefresher
+	 */
+	private void startRefresher(Configuration configuration, List<TOSCABinding> bindings, long refreshInterval) {
+		configuration.getTaskScheduler(BindingRefresher.class).scheduleWithFixedDelay(
+				new BindingRefresher(this.containerClient, configuration, bindings), refreshInterval, refreshInterval,
+				TimeUnit.SECONDS);
+	}
+
+	/**
+	 * Resolve the bindings of the required TOSCA Services using the OpenTOSCA container.
+	 */
+	private List<TOSCABinding> resolveBindings(Properties properties, List<TOSCAService> requiredApplications) {
+		this.containerClient = createContainerClient(properties);
+
+		this.setupArtifactDirectory();
+
 		List<Application> availableApplications = this.containerClient.getApplications();
 		Map<TOSCAService, Application> bindApplications = this.bindApplications(requiredApplications,
 				availableApplications);
 
-		Map<TOSCAService, ApplicationInstance> provisionApplications = this.provisionApplications(bindApplications);
+		Map<TOSCAService, ApplicationInstance> provisionApplications = this.provisionApplications(bindApplications,
+				properties);
 
 		Map<TOSCAService, Map<String, String>> bondaryDefintionProperties = this
 				.getBondaryDefintionProperties(provisionApplications);
 
-		for (Map<String, String> map : bondaryDefintionProperties.values()) {
-			map.forEach((key, value) -> configuration.registerContextProvider(key, bla -> value));
+		Map<TOSCAService, List<Path>> adapterJars = this.downloadApplicationConnectors(bindApplications, properties);
+
+		List<TOSCABinding> bindings = new ArrayList<>();
+		for (TOSCAService toscaService : requiredApplications) {
+			TOSCABinding binding = new TOSCABinding();
+			binding.id = toscaService.id;
+			binding.instanceId = provisionApplications.get(toscaService).getId();
+			binding.properties = new ArrayList<>();
+			bondaryDefintionProperties.get(toscaService).forEach((key, value) -> {
+				InputProperty property = new InputProperty();
+				property.key = key;
+				property.value = value;
+				binding.properties.add(property);
+			});
+			binding.adapterJars = adapterJars.get(toscaService).stream().map(path -> path.toAbsolutePath().toString())
+					.collect(Collectors.toList());
+			bindings.add(binding);
+		}
+		return bindings;
+	}
+
+	/**
+	 * Create a ClassLoader for the adapter jars of each binding and register the boundary definition properties as
+	 * context in the namespace of the TOSCA Service, which is assigned to this ClassLoader. So adapters of different
+	 * TOSCA Services can use the same context keys. Services outside of the adapter ClassLoaders, e.g. adapter classes
+	 * which are also on the parent classpath, get the properties through the global fallback of the namespaces, as long
+	 * as only one TOSCA Service defines the key.
+	 */
+	@SuppressWarnings("resource")
+	private Set<ClassLoader> registerBindings(Configuration configuration, List<TOSCABinding> bindings) {
+		Set<ClassLoader> classLoaders = new HashSet<>();
+		for (TOSCABinding binding : bindings) {
+			for (InputProperty property : Optional.ofNullable(binding.properties).orElse(Collections.emptyList())) {
+				String value = property.value;
+				configuration.registerContextProvider(binding.id, property.key, bla -> value);
+			}
+
+			List<String> adapterJars = Optional.ofNullable(binding.adapterJars).orElse(Collections.emptyList());
+			URL[] urls = new URL[adapterJars.size()];
+			for (int i = 0; i < urls.length; i++) {
+				try {
+					urls[i] = Paths.get(adapterJars.get(i)).toUri().toURL();
+				} catch (MalformedURLException e) {
+					throw new IllegalStateException(e);
+				}
+			}
+			URLClassLoader classLoader = new URLClassLoader(urls, this.getClass().getClassLoader());
+			configuration.registerContextNamespace(classLoader, binding.id);
+			classLoaders.add(classLoader);
+		}
+		return classLoaders;
+	}
+
+	private List<TOSCABinding> readBindings(Path bindingsFile, List<TOSCAService> requiredApplications) {
+		TOSCABindings toscaBindings;
+		try (InputStream inputStream = Files.newInputStream(bindingsFile)) {
+			toscaBindings = (TOSCABindings) JAXBContext.newInstance(TOSCABindings.class).createUnmarshaller()
+					.unmarshal(inputStream);
+		} catch (IOException | JAXBException e) {
+			throw new IllegalStateException("Could not read the recorded bindings " + bindingsFile, e);
+		}
+
+		Map<String, TOSCABinding> bindings = new HashMap<>();
+		for (TOSCABinding binding : Optional.ofNullable(toscaBindings.TOSCABindings)
+				.orElse(Collections.emptyList())) {
+			bindings.put(binding.id, binding);
+		}
+
+		List<TOSCABinding> requiredBindings = new ArrayList<>();
+		for (TOSCAService toscaService : requiredApplications) {
+			TOSCABinding binding = bindings.get(toscaService.id);
+			if (binding == null) {
+				throw new IllegalStateException("No recorded binding for " + toscaService.id + " in " + bindingsFile
+						+ ", start the TOSCA Service Manager in online mode first");
+			}
+			for (String adapterJar : Optional.ofNullable(binding.adapterJars).orElse(Collections.emptyList())) {
+				if (!Files.isRegularFile(Paths.get(adapterJar))) {
+					throw new IllegalStateException("The recorded adapter jar " + adapterJar + " of " + toscaService.id
+							+ " does not exist, start the TOSCA Service Manager in online mode first");
+				}
+			}
+			requiredBindings.add(binding);
+		}
+		this.logger.info("Using recorded bindings from {}", bindingsFile);
+		return requiredBindings;
+	}
+
+	private void writeBindings(Path bindingsFile, List<TOSCABinding> bindings) {
+		TOSCABindings toscaBindings = new TOSCABindings();
+		toscaBindings.TOSCABindings = bindings;
+		try {
+			Path parent = bindingsFile.toAbsolutePath().getParent();
+			Files.createDirectories(parent);
+			Path tempFile = Files.createTempFile(parent, bindingsFile.getFileName().toString(), ".tmp");
+			try (OutputStream outputStream = Files.newOutputStream(tempFile)) {
+				Marshaller marshaller = JAXBContext.newInstance(TOSCABindings.class).createMarshaller();
+				marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+				marshaller.marshal(toscaBindings, outputStream);
+			}
+			AdapterCache.move(tempFile, bindingsFile);
+		} catch (IOException | JAXBException e) {
+			this.logger.error("Could not record the bindings to " + bindingsFile, e);
+		}
+	}
+
+	private static ContainerClient createContainerClient(Properties properties) {
+		String containerHost = properties.getProperty("tosca.container.host");
+		Integer port = Integer.parseInt(properties.getProperty("tosca.container.port"));
+		return new ContainerClientBuilder().withHostname(containerHost).withPort(port).build();
+	}
+
+	/**
+	 * Compare the recorded bindings with the OpenTOSCA container in the background and record the current boundary
+	 * definition properties for the next start. The revalidation is read-only: it does not provision Application
+	 * Instances or download adapters, so the running application keeps using the recorded bindings and adapter jars it
+	 * was started with.
+	 */
+	private void revalidateInBackground(Properties properties, List<TOSCABinding> recordedBindings, Path bindingsFile) {
+		Thread thread = new Thread(() -> {
+			try {
+				List<TOSCABinding> bindings = this.revalidate(createContainerClient(properties), recordedBindings);
+				if (!toString(bindings).equals(toString(recordedBindings))) {
+					this.logger.warn("The recorded bindings in {} are outdated, they are used after a restart",
+							bindingsFile);
+					this.writeBindings(bindingsFile, bindings);
+				}
+			} catch (RuntimeException e) {
+				this.logger.warn("Could not revalidate the recorded bindings", e);
+			}
+		}, "tosca-bindings-revalidation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * @return copies of the recorded bindings with the current boundary definition properties of the bound Application
+	 *         Instances, bindings whose Application Instance is not available anymore are kept as recorded
+	 */
+	private List<TOSCABinding> revalidate(ContainerClient client, List<TOSCABinding> recordedBindings) {
+		Map<String, Application> applications = new HashMap<>();
+		for (Application application : client.getApplications()) {
+			applications.put(application.getId(), application);
+		}
+
+		List<TOSCABinding> bindings = new ArrayList<>();
+		for (TOSCABinding recorded : recordedBindings) {
+			Application application = applications.get(recorded.id);
+			Optional<ApplicationInstance> applicationInstance = application == null ? Optional.empty()
+					: client.getApplicationInstance(application, recorded.instanceId);
+			if (!applicationInstance.isPresent()) {
+				this.logger.warn("The recorded Application Instance {} of {} is not available anymore,"
+						+ " start the TOSCA Service Manager in online mode to provision a new one", recorded.instanceId,
+						recorded.id);
+				bindings.add(recorded);
+				continue;
+			}
+
+			TOSCABinding binding = new TOSCABinding();
+			binding.id = recorded.id;
+			binding.instanceId = recorded.instanceId;
+			binding.adapterJars = recorded.adapterJars;
+			binding.properties = new ArrayList<>();
+			applicationInstance.get().getProperties().forEach((key, value) -> {
+				InputProperty property = new InputProperty();
+				property.key = key;
+				property.value = value;
+				binding.properties.add(property);
+			});
+			bindings.add(binding);
 		}
+		return bindings;
+	}
 
-		return downloadApplicationConnectors(bindApplications);
+	private static String toString(List<TOSCABinding> bindings) {
+		StringBuilder builder = new StringBuilder();
+		for (TOSCABinding binding : bindings) {
+			builder.append(binding.id).append('=').append(binding.instanceId).append(binding.adapterJars);
+			for (InputProperty property : Optional.ofNullable(binding.properties).orElse(Collections.emptyList())) {
+				builder.append(property.key).append(':').append(property.value).append(',');
+			}
+			builder.append('\n');
+		}
+		return builder.toString();
 	}
 
 	private Properties readConfig() {
@@ -121,14 +359,6 @@ public class TOSCAServiceManager implements ServiceProviderLoader {
 	}
 
 	private void setupArtifactDirectory() {
-		if (Files.exists(this.adapterBasePath)) {
-			try (Stream<Path> stream = Files.walk(this.adapterBasePath)) {
-				stream.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
-			} catch (IOException e) {
-				this.logger.error("Could not clear the Adapter Base Path directory", e);
-			}
-		}
-
 		try {
 			Files.createDirectories(this.adapterBasePath);
 		} catch (IOException e) {
@@ -176,75 +406,165 @@ public class TOSCAServiceManager implements ServiceProviderLoader {
 		return binding;
 	}
 
+	/**
+	 * Provision the bound Applications concurrently. At most {@code manager.provisioning.parallelism} Applications are
+	 * provisioned at the same time and each provisioning fails after {@code manager.provisioning.timeout} seconds,
+	 * which can be overwritten per TOSCA Service with {@code manager.provisioning.timeout.<id>}.
+	 * 
+	 * @throws IllegalStateException
+	 *             with a report of all failed TOSCA Services, if any of them could not be provisioned
+	 */
 	private Map<TOSCAService, ApplicationInstance> provisionApplications(
-			Map<TOSCAService, Application> bindApplications) {
-		Map<TOSCAService, ApplicationInstance> dynamicBindings = new HashMap<>();
-
-		for (Entry<TOSCAService, Application> binding : bindApplications.entrySet()) {
-			TOSCAService toscaService = binding.getKey();
-			Application application = binding.getValue();
-			ApplicationInstance applicationInstance;
-			if (toscaService.instanceId != null && !toscaService.instanceId.isEmpty()) {
-				applicationInstance = this.containerClient.getApplicationInstance(application, toscaService.instanceId)
-						.orElseThrow(() -> new IllegalArgumentException("Application Instance "
-								+ toscaService.instanceId + " of Application" + application.getId() + " not found!"));
-			} else {
-				List<ApplicationInstance> applicationInstances = this.containerClient
-						.getApplicationInstances(application);
-				if (applicationInstances.isEmpty()) {
-					Map<String, String> collect = Optional.ofNullable(toscaService.inputProperties)
-							.orElse(Collections.emptyList()).stream()
-							.collect(Collectors.toMap(inProp -> inProp.key, inProp -> inProp.value));
-					applicationInstance = this.containerClient.provisionApplication(application, collect);
-				} else {
-					if (applicationInstances.size() > 1) {
-						this.logger.info("Multipe ApplicationsInstances found, selecting one");
+			Map<TOSCAService, Application> bindApplications, Properties properties) {
+		int parallelism = Integer.parseInt(properties.getProperty("manager.provisioning.parallelism",
+				Integer.toString(DEFAULT_PROVISIONING_PARALLELISM)));
+		long defaultTimeout = Long.parseLong(properties.getProperty("manager.provisioning.timeout",
+				Long.toString(DEFAULT_PROVISIONING_TIMEOUT)));
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), daemonThreadFactory());
+		ScheduledExecutorService timeoutScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreadFactory());
+		try {
+			Map<TOSCAService, CompletableFuture<ApplicationInstance>> provisionings = new HashMap<>();
+			for (Entry<TOSCAService, Application> binding : bindApplications.entrySet()) {
+				TOSCAService toscaService = binding.getKey();
+				long timeout = Long.parseLong(properties.getProperty("manager.provisioning.timeout." + toscaService.id,
+						Long.toString(defaultTimeout)));
+				CompletableFuture<ApplicationInstance> provisioning = new CompletableFuture<>();
+				Future<?> task = executor.submit(() -> {
+					// the timeout starts when the provisioning starts, not while it waits for a free thread
+					if (timeout > 0) {
+						ScheduledFuture<?> timer = timeoutScheduler.schedule(
+								() -> provisioning.completeExceptionally(new TimeoutException(
+										"Provisioning did not complete within " + timeout + " seconds")),
+								timeout, TimeUnit.SECONDS);
+						provisioning.whenComplete((applicationInstance, throwable) -> timer.cancel(false));
+					}
+					try {
+						provisioning.complete(this.provisionApplication(toscaService, binding.getValue()));
+					} catch (RuntimeException e) {
+						provisioning.completeExceptionally(e);
 					}
-					applicationInstance = applicationInstances.get(0);
+				});
+				// interrupt the provisioning which timed out, so it does not keep one of the threads busy
+				provisioning.whenComplete((applicationInstance, throwable) -> {
+					if (throwable instanceof TimeoutException) {
+						task.cancel(true);
+					}
+				});
+				provisionings.put(toscaService, provisioning);
+			}
+
+			Map<TOSCAService, ApplicationInstance> dynamicBindings = new HashMap<>();
+			Map<TOSCAService, Throwable> failures = new LinkedHashMap<>();
+			for (Entry<TOSCAService, CompletableFuture<ApplicationInstance>> provisioning : provisionings.entrySet()) {
+				try {
+					dynamicBindings.put(provisioning.getKey(), provisioning.getValue().join());
+				} catch (CompletionException | CancellationException e) {
+					failures.put(provisioning.getKey(), e.getCause() != null ? e.getCause() : e);
 				}
 			}
-			dynamicBindings.put(toscaService, applicationInstance);
+
+			if (!failures.isEmpty()) {
+				throw this.provisioningFailed(failures, bindApplications.size());
+			}
+			return dynamicBindings;
+		} finally {
+			timeoutScheduler.shutdownNow();
+			executor.shutdownNow();
+		}
+	}
+
+	private ApplicationInstance provisionApplication(TOSCAService toscaService, Application application) {
+		if (toscaService.instanceId != null && !toscaService.instanceId.isEmpty()) {
+			return this.containerClient.getApplicationInstance(application, toscaService.instanceId)
+					.orElseThrow(() -> new IllegalArgumentException("Application Instance " + toscaService.instanceId
+							+ " of Application" + application.getId() + " not found!"));
 		}
 
-		return dynamicBindings;
+		List<ApplicationInstance> applicationInstances = this.containerClient.getApplicationInstances(application);
+		if (applicationInstances.isEmpty()) {
+			Map<String, String> collect = Optional.ofNullable(toscaService.inputProperties)
+					.orElse(Collections.emptyList()).stream()
+					.collect(Collectors.toMap(inProp -> inProp.key, inProp -> inProp.value));
+			this.logger.info("Provisioning new instance of Application {}", application.getId());
+			return this.containerClient.provisionApplication(application, collect);
+		}
+		if (applicationInstances.size() > 1) {
+			this.logger.info("Multipe ApplicationsInstances found, selecting one");
+		}
+		return applicationInstances.get(0);
 	}
 
-	@SuppressWarnings("resource")
-	private Set<ClassLoader> downloadApplicationConnectors(Map<TOSCAService, Application> bindApplications) {
-		Set<ClassLoader> classLoaders = new HashSet<>();
-		for (Entry<TOSCAService, Application> binding : bindApplications.entrySet()) {
-			Application application = binding.getValue();
-			List<String> fileLocations = application.getFileLocations();
-			fileLocations.removeIf(url -> {
-				URI uri = URI.create(url);
-				String path = uri.getPath();
-				String[] pathSegments = path.split("/");
-				return !(pathSegments.length >= 9 && "csars".equals(pathSegments[1])
-						&& binding.getKey().id.equals(pathSegments[2]) && "content".equals(pathSegments[3])
-						&& "artifacttemplates".equals(pathSegments[4])
-						&& "http%3A%2F%2Flegion2.github.io%2Ftosca%2Fartifacttemplates".equals(pathSegments[5]));
-			});
-			List<URL> files = new ArrayList<>(fileLocations.size());
-			for (String baseURI : fileLocations) {
+	private IllegalStateException provisioningFailed(Map<TOSCAService, Throwable> failures, int total) {
+		StringBuilder report = new StringBuilder();
+		report.append("Provisioning failed for ").append(failures.size()).append(" of ").append(total)
+				.append(" TOSCA Services:");
+		for (Entry<TOSCAService, Throwable> failure : failures.entrySet()) {
+			report.append("\n - ").append(failure.getKey().id).append(": ").append(failure.getValue());
+		}
+		IllegalStateException exception = new IllegalStateException(report.toString());
+		failures.values().forEach(exception::addSuppressed);
+		return exception;
+	}
 
-				Response response = ClientBuilder.newClient().target(baseURI)
-						.request(MediaType.APPLICATION_OCTET_STREAM_TYPE).get();
+	private static ThreadFactory daemonThreadFactory() {
+		return runnable -> {
+			Thread thread = Executors.defaultThreadFactory().newThread(runnable);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
 
-				try (InputStream in = (InputStream) response.getEntity()) {
-					Path path = Files.createTempFile(this.adapterBasePath, application.getId(), ".jar");
-					Files.copy(in, path, StandardCopyOption.REPLACE_EXISTING);
-					files.add(path.toUri().toURL());
-				} catch (IOException e) {
-					throw new IllegalStateException(e);
+	/**
+	 * Get the adapter jars of all bound Applications from the {@link AdapterCache}. Missing jars are downloaded in
+	 * parallel using one shared client.
+	 */
+	private Map<TOSCAService, List<Path>> downloadApplicationConnectors(
+			Map<TOSCAService, Application> bindApplications, Properties properties) {
+		int parallelism = Integer.parseInt(properties.getProperty("manager.download.parallelism",
+				Integer.toString(DEFAULT_DOWNLOAD_PARALLELISM)));
+		Client client = ClientBuilder.newClient();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism), daemonThreadFactory());
+		try {
+			AdapterCache adapterCache = new AdapterCache(this.adapterBasePath, client);
+			Map<TOSCAService, List<CompletableFuture<Path>>> downloads = new HashMap<>();
+			for (Entry<TOSCAService, Application> binding : bindApplications.entrySet()) {
+				String csarId = binding.getKey().id;
+				List<CompletableFuture<Path>> files = new ArrayList<>();
+				for (String fileLocation : this.getAdapterFileLocations(csarId, binding.getValue())) {
+					files.add(CompletableFuture.supplyAsync(() -> adapterCache.get(csarId, fileLocation), executor));
 				}
-
+				downloads.put(binding.getKey(), files);
 			}
 
-			URL[] urls = new URL[files.size()];
-			files.toArray(urls);
-			classLoaders.add(new URLClassLoader(urls, this.getClass().getClassLoader()));
+			Map<TOSCAService, List<Path>> adapterJars = new HashMap<>();
+			for (Entry<TOSCAService, List<CompletableFuture<Path>>> download : downloads.entrySet()) {
+				adapterJars.put(download.getKey(),
+						download.getValue().stream().map(CompletableFuture::join).collect(Collectors.toList()));
+			}
+			return adapterJars;
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+			client.close();
 		}
-		return classLoaders;
+	}
+
+	private List<String> getAdapterFileLocations(String csarId, Application application) {
+		List<String> fileLocations = new ArrayList<>(application.getFileLocations());
+		fileLocations.removeIf(url -> {
+			URI uri = URI.create(url);
+			String path = uri.getPath();
+			String[] pathSegments = path.split("/");
+			return !(pathSegments.length >= 9 && "csars".equals(pathSegments[1]) && csarId.equals(pathSegments[2])
+					&& "content".equals(pathSegments[3]) && "artifacttemplates".equals(pathSegments[4])
+					&& "http%3A%2F%2Flegion2.github.io%2Ftosca%2Fartifacttemplates".equals(pathSegments[5]));
+		});
+		return fileLocations;
 	}
 
 	private Map<TOSCAService, Map<String, String>> getBondaryDefintionProperties(
@@ -24,7 +24,8 @@ import org.opentosca.container.client.model.ApplicationInstance;
 
 /**
  * A InputProperty represent a Key-Value pair used as input parameter when new {@link ApplicationInstance} of a
- * {@link Application} must be created.
+ * {@link Application} must be created. It is also used for the recorded boundary definition properties of a
+ * {@link TOSCABinding}.
  * 
  * @author Leon Kiefer
  */